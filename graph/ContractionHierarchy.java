@@ -0,0 +1,625 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* See restrictions in Graph.java. */
+
+/** A contraction hierarchy of an edge-weighted graph, which answers
+ *  point-to-point shortest-path queries far faster than a search of the
+ *  graph itself, after a one-time preprocessing step (contract).
+ *
+ *  Preprocessing removes (contracts) the vertices one at a time, least
+ *  important first, as judged by how many edges their removal would add.
+ *  When a vertex V is removed, each pair of remaining neighbors (U, W)
+ *  whose only shortest connection runs through V receives a shortcut edge
+ *  U -> W, which remembers V as its middle vertex.  The order of removal
+ *  ranks the vertices.  A query then searches upward in rank from both ends
+ *  (forward from the source and backward from the destination) over the
+ *  original edges and shortcuts; the two searches meet at the highest
+ *  vertex of a shortest path.  Shortcuts on the path found are unpacked
+ *  recursively through their middle vertices into the original vertex
+ *  sequence, in which consecutive vertices are joined by edges of the
+ *  graph.
+ *
+ *  By overriding getWeight, the client supplies the edge weights, which
+ *  must be non-negative.  The graph and its weights must not change after
+ *  contract is called.  Queries may be made from several threads at once.
+ *  @author Michael Chang
+ */
+public abstract class ContractionHierarchy {
+
+    /** A hierarchy for G, which must be contracted before use. */
+    public ContractionHierarchy(Graph G) {
+        _G = G;
+    }
+
+    /** Returns the weight of edge (U, V) of the graph. */
+    protected abstract double getWeight(int u, int v);
+
+    /** Build the hierarchy.  Must be called before any query. */
+    public void contract() {
+        new Builder().build();
+    }
+
+    /** Returns the number of shortcut edges added by contract. */
+    public int shortcutCount() {
+        return _shortcuts;
+    }
+
+    /** Returns the weight of a shortest path from SOURCE to DEST, or
+     *  infinity if there is none. */
+    public double distance(int source, int dest) {
+        return _searches.get().search(source, dest);
+    }
+
+    /** Returns the vertices of a shortest path from SOURCE to DEST, starting
+     *  with SOURCE and ending with DEST, or null if there is none. */
+    public List<Integer> path(int source, int dest) {
+        Search search = _searches.get();
+        search.search(source, dest);
+        return search.path(source, dest);
+    }
+
+    /** Returns the number of vertices settled by the last query on the
+     *  current thread. */
+    public int getSettledCount() {
+        return _searches.get()._settled;
+    }
+
+    /** Returns the middle vertex of the edge U -> V of the hierarchy, or 0
+     *  if it is an original edge. */
+    private int middle(int u, int v) {
+        if (_rank[u] < _rank[v]) {
+            for (int k = _upOffsets[u]; k < _upOffsets[u + 1]; k += 1) {
+                if (_upTargets[k] == v) {
+                    return _upMiddles[k];
+                }
+            }
+        } else {
+            for (int k = _downOffsets[v]; k < _downOffsets[v + 1]; k += 1) {
+                if (_downSources[k] == u) {
+                    return _downMiddles[k];
+                }
+            }
+        }
+        throw new IllegalStateException("missing hierarchy edge");
+    }
+
+    /** Append to PATH the vertices after U on the unpacked form of the
+     *  hierarchy edge U -> V, whose middle vertex is MIDDLE. */
+    private void unpack(int u, int v, int middle, List<Integer> path) {
+        ArrayList<int[]> stack = new ArrayList<>();
+        stack.add(new int[] { u, v, middle });
+        while (!stack.isEmpty()) {
+            int[] edge = stack.remove(stack.size() - 1);
+            int m = edge[2];
+            if (m == 0) {
+                path.add(edge[1]);
+            } else {
+                stack.add(new int[] { m, edge[1], middle(m, edge[1]) });
+                stack.add(new int[] { edge[0], m, middle(edge[0], m) });
+            }
+        }
+    }
+
+    /** Builds the hierarchy.  During contraction, the graph of remaining
+     *  vertices plus shortcuts (the overlay) is kept as growable edge
+     *  lists.  A contracted vertex is removed from its neighbors' lists,
+     *  but keeps its own, which then hold exactly its edges to and from
+     *  higher-ranked vertices: its edges in the hierarchy. */
+    private class Builder {
+
+        /** A Builder for _G. */
+        Builder() {
+            _n = _G.maxVertex();
+            _out = new int[_n + 1][];
+            _in = new int[_n + 1][];
+            _outWeights = new double[_n + 1][];
+            _inWeights = new double[_n + 1][];
+            _outMiddles = new int[_n + 1][];
+            _inMiddles = new int[_n + 1][];
+            _outSize = new int[_n + 1];
+            _inSize = new int[_n + 1];
+            for (int v = 1; v <= _n; v += 1) {
+                _out[v] = _in[v] = EMPTY;
+                _outWeights[v] = _inWeights[v] = EMPTY_WEIGHTS;
+                _outMiddles[v] = _inMiddles[v] = EMPTY;
+            }
+            _ranks = new int[_n + 1];
+            _deleted = new int[_n + 1];
+            _dist = new double[_n + 1];
+            _stamps = new int[_n + 1];
+            _witnessFringe = new IndexedHeap(_n, null);
+            _order = new IndexedHeap(_n, null);
+        }
+
+        /** Contract all vertices and set up the hierarchy from the
+         *  result. */
+        void build() {
+            for (int v : _G.vertices()) {
+                for (int w : _G.successors(v)) {
+                    if (v != w) {
+                        addEdge(v, w, getWeight(v, w), 0);
+                    }
+                }
+            }
+            for (int v : _G.vertices()) {
+                _order.update(v, priority(v));
+            }
+            int rank;
+            rank = 0;
+            int shortcuts;
+            shortcuts = 0;
+            while (!_order.isEmpty()) {
+                int v = _order.removeFirst();
+                double p = priority(v);
+                if (!_order.isEmpty() && p > _order.key(_order.peek())) {
+                    _order.update(v, p);
+                    continue;
+                }
+                _numShortcuts = 0;
+                shortcuts(v, true);
+                for (int i = 0; i < _numShortcuts; i += 1) {
+                    addEdge(_shortcutEnds[2 * i], _shortcutEnds[2 * i + 1],
+                            _shortcutWeights[i], v);
+                }
+                shortcuts += _numShortcuts;
+                rank += 1;
+                _ranks[v] = rank;
+                for (int i = 0; i < _outSize[v]; i += 1) {
+                    removeIn(_out[v][i], v);
+                }
+                for (int i = 0; i < _inSize[v]; i += 1) {
+                    removeOut(_in[v][i], v);
+                }
+                updateNeighbors(_out[v], _outSize[v]);
+                updateNeighbors(_in[v], _inSize[v]);
+            }
+            finish(shortcuts);
+        }
+
+        /** Record the contraction of a neighbor in the remaining vertices
+         *  among NBRS[0 .. N-1], and recompute their priorities. */
+        private void updateNeighbors(int[] nbrs, int n) {
+            for (int i = 0; i < n; i += 1) {
+                int x = nbrs[i];
+                _deleted[x] += 1;
+                _order.update(x, priority(x));
+            }
+        }
+
+        /** Remove U from the list of edges entering W. */
+        private void removeIn(int w, int u) {
+            int last = _inSize[w] - 1;
+            for (int j = 0; j <= last; j += 1) {
+                if (_in[w][j] == u) {
+                    _in[w][j] = _in[w][last];
+                    _inWeights[w][j] = _inWeights[w][last];
+                    _inMiddles[w][j] = _inMiddles[w][last];
+                    _inSize[w] = last;
+                    return;
+                }
+            }
+        }
+
+        /** Remove W from the list of edges leaving U. */
+        private void removeOut(int u, int w) {
+            int last = _outSize[u] - 1;
+            for (int j = 0; j <= last; j += 1) {
+                if (_out[u][j] == w) {
+                    _out[u][j] = _out[u][last];
+                    _outWeights[u][j] = _outWeights[u][last];
+                    _outMiddles[u][j] = _outMiddles[u][last];
+                    _outSize[u] = last;
+                    return;
+                }
+            }
+        }
+
+        /** Returns the contraction priority of V: twice the number of
+         *  shortcuts its contraction would add less the number of its
+         *  remaining edges, plus its number of contracted neighbors (which
+         *  spreads contraction evenly over the graph).  Lower is contracted
+         *  sooner. */
+        private double priority(int v) {
+            return 2 * (shortcuts(v, false) - _outSize[v] - _inSize[v])
+                + _deleted[v];
+        }
+
+        /** Returns the number of shortcuts needed to contract V.  If
+         *  RECORD, also record them in _shortcutEnds and
+         *  _shortcutWeights. */
+        private int shortcuts(int v, boolean record) {
+            int count;
+            count = 0;
+            for (int i = 0; i < _inSize[v]; i += 1) {
+                int u = _in[v][i];
+                double toV = _inWeights[v][i];
+                double limit = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < _outSize[v]; j += 1) {
+                    int w = _out[v][j];
+                    if (w != u) {
+                        limit = Math.max(limit, toV + _outWeights[v][j]);
+                    }
+                }
+                if (limit == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                witnessSearch(u, v, limit,
+                              record ? WITNESS_LIMIT : SIMULATED_LIMIT);
+                for (int j = 0; j < _outSize[v]; j += 1) {
+                    int w = _out[v][j];
+                    double via = toV + _outWeights[v][j];
+                    if (w != u && witness(w) > via) {
+                        count += 1;
+                        if (record) {
+                            recordShortcut(u, w, via);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /** Record the shortcut U -> W of weight WEIGHT. */
+        private void recordShortcut(int u, int w, double weight) {
+            if (_numShortcuts == _shortcutWeights.length) {
+                _shortcutWeights =
+                    Arrays.copyOf(_shortcutWeights, 2 * _numShortcuts);
+                _shortcutEnds =
+                    Arrays.copyOf(_shortcutEnds, 4 * _numShortcuts);
+            }
+            _shortcutEnds[2 * _numShortcuts] = u;
+            _shortcutEnds[2 * _numShortcuts + 1] = w;
+            _shortcutWeights[_numShortcuts] = weight;
+            _numShortcuts += 1;
+        }
+
+        /** Find the weights of shortest paths from U among the remaining
+         *  vertices other than V, as far as weight LIMIT, settling at most
+         *  MAXSETTLED vertices.  Those found are given by witness. */
+        private void witnessSearch(int u, int v, double limit,
+                                   int maxSettled) {
+            _epoch += 1;
+            _witnessFringe.clear();
+            setWitness(u, 0);
+            _witnessFringe.update(u, 0);
+            int settled;
+            settled = 0;
+            while (!_witnessFringe.isEmpty() && settled < maxSettled) {
+                int x = _witnessFringe.removeFirst();
+                double d = witness(x);
+                if (d > limit) {
+                    break;
+                }
+                settled += 1;
+                for (int i = 0; i < _outSize[x]; i += 1) {
+                    int y = _out[x][i];
+                    double w = d + _outWeights[x][i];
+                    if (y != v && w < witness(y)) {
+                        setWitness(y, w);
+                        _witnessFringe.update(y, w);
+                    }
+                }
+            }
+        }
+
+        /** Returns the weight found for V by the last witness search, or
+         *  infinity if none. */
+        private double witness(int v) {
+            return _stamps[v] == _epoch ? _dist[v] : Double.POSITIVE_INFINITY;
+        }
+
+        /** Set witness(V) to W. */
+        private void setWitness(int v, double w) {
+            _stamps[v] = _epoch;
+            _dist[v] = w;
+        }
+
+        /** Add the edge U -> W with weight WEIGHT and middle vertex MIDDLE
+         *  to the overlay, or if there is already such an edge, lower its
+         *  weight to WEIGHT (and set its middle vertex) if that is
+         *  smaller. */
+        private void addEdge(int u, int w, double weight, int middle) {
+            for (int i = 0; i < _outSize[u]; i += 1) {
+                if (_out[u][i] == w) {
+                    if (weight < _outWeights[u][i]) {
+                        _outWeights[u][i] = weight;
+                        _outMiddles[u][i] = middle;
+                        for (int j = 0; j < _inSize[w]; j += 1) {
+                            if (_in[w][j] == u) {
+                                _inWeights[w][j] = weight;
+                                _inMiddles[w][j] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            int k = _outSize[u];
+            if (k == _out[u].length) {
+                int size = Math.max(4, 2 * k);
+                _out[u] = Arrays.copyOf(_out[u], size);
+                _outWeights[u] = Arrays.copyOf(_outWeights[u], size);
+                _outMiddles[u] = Arrays.copyOf(_outMiddles[u], size);
+            }
+            _out[u][k] = w;
+            _outWeights[u][k] = weight;
+            _outMiddles[u][k] = middle;
+            _outSize[u] += 1;
+            k = _inSize[w];
+            if (k == _in[w].length) {
+                int size = Math.max(4, 2 * k);
+                _in[w] = Arrays.copyOf(_in[w], size);
+                _inWeights[w] = Arrays.copyOf(_inWeights[w], size);
+                _inMiddles[w] = Arrays.copyOf(_inMiddles[w], size);
+            }
+            _in[w][k] = u;
+            _inWeights[w][k] = weight;
+            _inMiddles[w][k] = middle;
+            _inSize[w] += 1;
+        }
+
+        /** Store the finished hierarchy, which has SHORTCUTS shortcuts, in
+         *  the compressed arrays used by queries. */
+        private void finish(int shortcuts) {
+            int[] upOffsets = new int[_n + 2], downOffsets = new int[_n + 2];
+            for (int v = 1; v <= _n; v += 1) {
+                upOffsets[v + 1] = upOffsets[v] + _outSize[v];
+                downOffsets[v + 1] = downOffsets[v] + _inSize[v];
+            }
+            int[] upTargets = new int[upOffsets[_n + 1]],
+                upMiddles = new int[upTargets.length],
+                downSources = new int[downOffsets[_n + 1]],
+                downMiddles = new int[downSources.length];
+            double[] upWeights = new double[upTargets.length],
+                downWeights = new double[downSources.length];
+            for (int v = 1; v <= _n; v += 1) {
+                System.arraycopy(_out[v], 0, upTargets, upOffsets[v],
+                                 _outSize[v]);
+                System.arraycopy(_outWeights[v], 0, upWeights, upOffsets[v],
+                                 _outSize[v]);
+                System.arraycopy(_outMiddles[v], 0, upMiddles, upOffsets[v],
+                                 _outSize[v]);
+                System.arraycopy(_in[v], 0, downSources, downOffsets[v],
+                                 _inSize[v]);
+                System.arraycopy(_inWeights[v], 0, downWeights,
+                                 downOffsets[v], _inSize[v]);
+                System.arraycopy(_inMiddles[v], 0, downMiddles,
+                                 downOffsets[v], _inSize[v]);
+            }
+            _rank = _ranks;
+            _upOffsets = upOffsets;
+            _upTargets = upTargets;
+            _upWeights = upWeights;
+            _upMiddles = upMiddles;
+            _downOffsets = downOffsets;
+            _downSources = downSources;
+            _downWeights = downWeights;
+            _downMiddles = downMiddles;
+            _shortcuts = shortcuts;
+        }
+
+        /** Maximum vertex number. */
+        private final int _n;
+        /** Overlay edges: _out[U][0 .. _outSize[U] - 1] are the heads of the
+         *  edges leaving U, with weights _outWeights[U] and middle vertices
+         *  _outMiddles[U] (0 for original edges); the same edges are kept
+         *  by their heads in _in, _inWeights, _inMiddles, and _inSize. */
+        private final int[][] _out, _in, _outMiddles, _inMiddles;
+        /** Overlay edge weights (see _out). */
+        private final double[][] _outWeights, _inWeights;
+        /** Overlay list sizes (see _out). */
+        private final int[] _outSize, _inSize;
+        /** Ranks of contracted vertices; 0 for remaining ones. */
+        private final int[] _ranks;
+        /** Numbers of contracted neighbors. */
+        private final int[] _deleted;
+        /** Remaining vertices, ordered by priority. */
+        private final IndexedHeap _order;
+        /** Witness search weights, valid where _stamps equals _epoch. */
+        private final double[] _dist;
+        /** Witness search stamps (see _dist). */
+        private final int[] _stamps;
+        /** Current witness search number. */
+        private int _epoch;
+        /** The fringe of witness searches. */
+        private final IndexedHeap _witnessFringe;
+        /** Shortcuts recorded by shortcuts(V, true): shortcut #I runs from
+         *  _shortcutEnds[2I] to _shortcutEnds[2I + 1] with weight
+         *  _shortcutWeights[I]. */
+        private int[] _shortcutEnds = new int[32];
+        /** Weights of recorded shortcuts (see _shortcutEnds). */
+        private double[] _shortcutWeights = new double[16];
+        /** Number of recorded shortcuts. */
+        private int _numShortcuts;
+    }
+
+    /** The state of queries on one thread.  Weights and the edges by which
+     *  vertices were reached are valid where the corresponding stamp
+     *  equals the current query number, so that no per-query
+     *  initialization is needed. */
+    private class Search {
+
+        /** Search state for vertices up to the hierarchy's maximum. */
+        Search() {
+            int n = _rank.length;
+            _forward = new double[n];
+            _backward = new double[n];
+            _forwardStamps = new int[n];
+            _backwardStamps = new int[n];
+            _forwardEdges = new int[n];
+            _backwardEdges = new int[n];
+            _forwardTails = new int[n];
+            _backwardHeads = new int[n];
+            _forwardFringe = new IndexedHeap(n, null);
+            _backwardFringe = new IndexedHeap(n, null);
+        }
+
+        /** Search for a shortest path from SOURCE to DEST, returning its
+         *  weight, or infinity if there is none. */
+        double search(int source, int dest) {
+            _query += 1;
+            _forwardFringe.clear();
+            _backwardFringe.clear();
+            _best = Double.POSITIVE_INFINITY;
+            _meet = 0;
+            _settled = 0;
+            if (!_G.contains(source) || !_G.contains(dest)) {
+                return _best;
+            }
+            reachForward(source, 0, 0, -1);
+            reachBackward(dest, 0, 0, -1);
+            while (!_forwardFringe.isEmpty() || !_backwardFringe.isEmpty()) {
+                boolean forward = _backwardFringe.isEmpty()
+                    || (!_forwardFringe.isEmpty()
+                        && _forwardFringe.key(_forwardFringe.peek())
+                           <= _backwardFringe.key(_backwardFringe.peek()));
+                IndexedHeap fringe =
+                    forward ? _forwardFringe : _backwardFringe;
+                if (fringe.key(fringe.peek()) >= _best) {
+                    fringe.clear();
+                    continue;
+                }
+                int v = fringe.removeFirst();
+                _settled += 1;
+                if (forward) {
+                    double d = _forward[v];
+                    for (int k = _upOffsets[v]; k < _upOffsets[v + 1];
+                         k += 1) {
+                        reachForward(_upTargets[k], d + _upWeights[k], v,
+                                     k);
+                    }
+                } else {
+                    double d = _backward[v];
+                    for (int k = _downOffsets[v]; k < _downOffsets[v + 1];
+                         k += 1) {
+                        reachBackward(_downSources[k], d + _downWeights[k],
+                                      v, k);
+                    }
+                }
+            }
+            return _best;
+        }
+
+        /** Returns the path found by the last search, from SOURCE to DEST,
+         *  or null if there is none. */
+        List<Integer> path(int source, int dest) {
+            if (_meet == 0) {
+                return null;
+            }
+            ArrayList<int[]> up = new ArrayList<>();
+            for (int v = _meet; v != source; v = _forwardTails[v]) {
+                up.add(new int[] { _forwardTails[v], v,
+                                   _upMiddles[_forwardEdges[v]] });
+            }
+            ArrayList<Integer> result = new ArrayList<>();
+            result.add(source);
+            for (int i = up.size() - 1; i >= 0; i -= 1) {
+                int[] edge = up.get(i);
+                unpack(edge[0], edge[1], edge[2], result);
+            }
+            for (int v = _meet; v != dest; v = _backwardHeads[v]) {
+                unpack(v, _backwardHeads[v], _downMiddles[_backwardEdges[v]],
+                       result);
+            }
+            return result;
+        }
+
+        /** Reach V with weight D from the source via up edge #K from U (or
+         *  K = -1 for the source itself), if that improves on its
+         *  weight. */
+        private void reachForward(int v, double d, int u, int k) {
+            if (_forwardStamps[v] != _query || d < _forward[v]) {
+                _forwardStamps[v] = _query;
+                _forward[v] = d;
+                _forwardEdges[v] = k;
+                _forwardTails[v] = u;
+                _forwardFringe.update(v, d);
+                if (_backwardStamps[v] == _query) {
+                    meet(v, d + _backward[v]);
+                }
+            }
+        }
+
+        /** Reach V with weight D to the destination via down edge #K to W
+         *  (or K = -1 for the destination itself), if that improves on its
+         *  weight. */
+        private void reachBackward(int v, double d, int w, int k) {
+            if (_backwardStamps[v] != _query || d < _backward[v]) {
+                _backwardStamps[v] = _query;
+                _backward[v] = d;
+                _backwardEdges[v] = k;
+                _backwardHeads[v] = w;
+                _backwardFringe.update(v, d);
+                if (_forwardStamps[v] == _query) {
+                    meet(v, _forward[v] + d);
+                }
+            }
+        }
+
+        /** Record a path of weight W through V if it is the best so far. */
+        private void meet(int v, double w) {
+            if (w < _best) {
+                _best = w;
+                _meet = v;
+            }
+        }
+
+        /** Weights from the source and to the destination. */
+        private final double[] _forward, _backward;
+        /** Query numbers for which _forward and _backward are valid. */
+        private final int[] _forwardStamps, _backwardStamps;
+        /** Up edges by which vertices were reached from the source, and
+         *  down edges by which they were reached from the destination. */
+        private final int[] _forwardEdges, _backwardEdges;
+        /** Tails of _forwardEdges and heads of _backwardEdges. */
+        private final int[] _forwardTails, _backwardHeads;
+        /** The fringes of the two searches. */
+        private final IndexedHeap _forwardFringe, _backwardFringe;
+        /** Current query number. */
+        private int _query;
+        /** Weight of the best path found so far. */
+        private double _best;
+        /** Highest vertex of the best path found so far, or 0 if none. */
+        private int _meet;
+        /** Number of vertices settled by the last query. */
+        private int _settled;
+    }
+
+    /** The graph. */
+    private final Graph _G;
+    /** Per-thread query state. */
+    private final ThreadLocal<Search> _searches =
+        ThreadLocal.withInitial(() -> new Search());
+    /** Contraction ranks, indexed by vertex. */
+    private int[] _rank;
+    /** Edges to higher-ranked vertices: those leaving V are
+     *  _upTargets[_upOffsets[V] .. _upOffsets[V + 1] - 1], with weights
+     *  _upWeights and middle vertices _upMiddles (0 if original). */
+    private int[] _upOffsets, _upTargets, _upMiddles;
+    /** Weights of up edges. */
+    private double[] _upWeights;
+    /** Edges from higher-ranked vertices: those entering V come from
+     *  _downSources[_downOffsets[V] .. _downOffsets[V + 1] - 1], with
+     *  weights _downWeights and middle vertices _downMiddles. */
+    private int[] _downOffsets, _downSources, _downMiddles;
+    /** Weights of down edges. */
+    private double[] _downWeights;
+    /** Number of shortcuts. */
+    private int _shortcuts;
+
+    /** An empty edge list. */
+    private static final int[] EMPTY = new int[0];
+    /** An empty weight list. */
+    private static final double[] EMPTY_WEIGHTS = new double[0];
+    /** Maximum number of vertices settled by one witness search.  A
+     *  search that stops early may add unneeded shortcuts, but never
+     *  omits a needed one. */
+    private static final int WITNESS_LIMIT = 200;
+    /** Maximum number of vertices settled by one witness search when
+     *  merely estimating the number of shortcuts for a priority. */
+    private static final int SIMULATED_LIMIT = 20;
+}
@@ -1,10 +1,12 @@
 package graph;
-import java.util.ArrayList;
 
 /* See restrictions in Graph.java. */
 
 /** Represents a general unlabeled directed graph whose vertices are denoted by
- *  positive integers. Graphs may have self edges.
+ *  positive integers. Graphs may have self edges.  Once built, a graph
+ *  may be copied by freeze into a read-only graph laid out for fast
+ *  searching, and frozen builds such a graph directly from its rows of
+ *  successors.
  *
  *  @author Michael Chang
  */
@@ -15,25 +17,16 @@ public class DirectedGraph extends GraphObj {
         return true;
     }
 
-    @Override
-    public int inDegree(int v) {
-        int count = 0;
-        for (int[] array : edges()) {
-            if (array[1] == v) {
-                count += 1;
-            }
-        }
-        return count;
-    }
-
-    @Override
-    public Iteration<Integer> predecessors(int v) {
-        ArrayList<Integer> result = new ArrayList<>();
-        for (int[] array : edges()) {
-            if (array[1] == v) {
-                result.add(array[0]);
-            }
-        }
-        return Iteration.iteration(result);
+    /** Returns a frozen directed graph (see freeze()) with vertices
+     *  1 .. OFFSETS.length - 2, in which the successors of vertex V are
+     *  TARGETS[OFFSETS[V] .. OFFSETS[V + 1] - 1], in that order, and the
+     *  edge to TARGETS[K] has id K + 1.  OFFSETS[0] and OFFSETS[1] must be
+     *  0, and the last entry of OFFSETS must be TARGETS.length.  This
+     *  builds a graph from compressed sparse row arrays directly, without
+     *  adding edges one at a time.  The arrays are used, not copied, and
+     *  must not be modified afterward.  Throws IllegalArgumentException if
+     *  they do not describe a graph without duplicate edges. */
+    public static Graph frozen(int[] offsets, int[] targets) {
+        return new FrozenGraph(offsets, targets);
     }
 }
@@ -0,0 +1,232 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/* See restrictions in Graph.java. */
+
+/** Tables of shortest-path distances in an edge-weighted graph from each
+ *  of a list of origins to each of a list of targets.  Each origin costs
+ *  one single-source search, which stops as soon as it has settled every
+ *  target, rather than one search per (origin, target) pair.  The origins
+ *  are divided among the calling thread and helpers run on an executor
+ *  (by default, the common fork-join pool), each of which reuses one
+ *  SimpleShortestPaths.Workspace for all its searches.  No threads are
+ *  started or stopped per table, so repeated requests do not pay for
+ *  them.  The calling thread claims origins until none are left and
+ *  then waits only for those claimed by helpers, so that a busy
+ *  executor delays a table but cannot deadlock it.
+ *
+ *  By overriding getWeight, the client supplies the edge weights, which
+ *  must be non-negative.  The graph and its weights must not change while
+ *  a table is being computed.
+ *  @author Michael Chang
+ */
+public abstract class DistanceMatrix {
+
+    /** Distance tables for G, computed on as many threads as there are
+     *  processors. */
+    public DistanceMatrix(Graph G) {
+        this(G, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Distance tables for G, computed on up to THREADS threads, with
+     *  helpers from the common fork-join pool. */
+    public DistanceMatrix(Graph G, int threads) {
+        this(G, ForkJoinPool.commonPool(), threads);
+    }
+
+    /** Distance tables for G, computed on up to THREADS threads: the
+     *  calling thread and up to THREADS - 1 tasks run on EXECUTOR, which
+     *  is not shut down. */
+    public DistanceMatrix(Graph G, ExecutorService executor, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _G = G;
+        _executor = executor;
+        _threads = threads;
+    }
+
+    /** Returns the weight of edge (U, V) of the graph. */
+    protected abstract double getWeight(int u, int v);
+
+    /** Returns a table whose entry [I][J] is the weight of a shortest path
+     *  from ORIGINS[I] to TARGETS[J], or infinity if there is none. */
+    public double[][] distances(int[] origins, int[] targets) {
+        return distances(origins, targets, null);
+    }
+
+    /** Returns a table as for distances(ORIGINS, TARGETS).  If TREES is
+     *  not null, it must have the same length as ORIGINS, and its item I
+     *  is set to the shortest-path tree from ORIGINS[I] to the targets. */
+    public double[][] distances(int[] origins, int[] targets, Tree[] trees) {
+        if (trees != null && trees.length != origins.length) {
+            throw new IllegalArgumentException("wrong number of trees");
+        }
+        double[][] result = new double[origins.length][];
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch rows = new CountDownLatch(origins.length);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            SimpleShortestPaths.Workspace work =
+                new SimpleShortestPaths.Workspace();
+            for (int i = next.getAndIncrement(); i < origins.length;
+                 i = next.getAndIncrement()) {
+                try {
+                    if (failure.get() == null) {
+                        result[i] = row(origins[i], targets, work, trees, i);
+                    }
+                } catch (RuntimeException | Error excp) {
+                    failure.compareAndSet(null, excp);
+                } finally {
+                    rows.countDown();
+                }
+            }
+        };
+        int threads = Math.min(_threads, origins.length);
+        for (int k = 1; k < threads; k += 1) {
+            _executor.execute(worker);
+        }
+        worker.run();
+        try {
+            rows.await();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("distance table interrupted");
+        }
+        Throwable excp = failure.get();
+        if (excp instanceof RuntimeException) {
+            throw (RuntimeException) excp;
+        } else if (excp != null) {
+            throw (Error) excp;
+        }
+        return result;
+    }
+
+    /** Returns the distances from SOURCE to each of TARGETS, searching with
+     *  WORK.  If TREES is not null, set TREES[I] to the shortest-path tree
+     *  from SOURCE to the targets. */
+    private double[] row(int source, int[] targets,
+                         SimpleShortestPaths.Workspace work,
+                         Tree[] trees, int i) {
+        SimpleShortestPaths paths =
+            new SimpleShortestPaths(_G, source, targets, targets.length,
+                                    work) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return DistanceMatrix.this.getWeight(u, v);
+                }
+            };
+        paths.setPaths();
+        double[] result = new double[targets.length];
+        for (int j = 0; j < targets.length; j += 1) {
+            result[j] = paths.getWeight(targets[j]);
+        }
+        if (trees != null) {
+            trees[i] = new Tree(paths, targets);
+        }
+        return result;
+    }
+
+    /** The union of the shortest paths from one origin to the targets of
+     *  a distance table, which forms a tree rooted at the origin.  Only
+     *  the vertices on those paths are kept, in order of vertex number
+     *  with their predecessors, so that a tree takes space in proportion
+     *  to the paths, not to the graph. */
+    public static class Tree {
+
+        /** The tree of the shortest paths in PATHS to TARGETS. */
+        Tree(ShortestPaths paths, int[] targets) {
+            _source = paths.getSource();
+            int[] vertices = new int[INITIAL_SIZE],
+                predecessors = new int[INITIAL_SIZE];
+            int n;
+            n = 0;
+            BitSet seen = new BitSet();
+            for (int t : targets) {
+                if (paths.getWeight(t) == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                for (int v = t; v != _source && !seen.get(v);
+                     v = paths.getPredecessor(v)) {
+                    seen.set(v);
+                    if (n == vertices.length) {
+                        vertices = Arrays.copyOf(vertices, 2 * n);
+                        predecessors = Arrays.copyOf(predecessors, 2 * n);
+                    }
+                    vertices[n] = v;
+                    predecessors[n] = paths.getPredecessor(v);
+                    n += 1;
+                }
+            }
+            long[] pairs = new long[n];
+            for (int k = 0; k < n; k += 1) {
+                pairs[k] = ((long) vertices[k] << 32) | predecessors[k];
+            }
+            Arrays.sort(pairs);
+            _vertices = new int[n];
+            _predecessors = new int[n];
+            for (int k = 0; k < n; k += 1) {
+                _vertices[k] = (int) (pairs[k] >>> 32);
+                _predecessors[k] = (int) pairs[k];
+            }
+        }
+
+        /** Returns the origin. */
+        public int getSource() {
+            return _source;
+        }
+
+        /** Returns the predecessor of V on a shortest path from the origin,
+         *  or 0 if V is the origin or is not on the path to any target. */
+        public int getPredecessor(int v) {
+            int k = Arrays.binarySearch(_vertices, v);
+            return k < 0 ? 0 : _predecessors[k];
+        }
+
+        /** Returns the vertices of a shortest path from the origin to
+         *  TARGET, which must be one of the targets of the table, or null
+         *  if there is none. */
+        public List<Integer> pathTo(int target) {
+            ArrayList<Integer> result = new ArrayList<>();
+            int v;
+            for (v = target; v != _source && v != 0;
+                 v = getPredecessor(v)) {
+                result.add(v);
+            }
+            if (v == 0) {
+                return null;
+            }
+            result.add(_source);
+            Collections.reverse(result);
+            return result;
+        }
+
+        /** Initial size of the arrays used to collect the tree. */
+        private static final int INITIAL_SIZE = 16;
+
+        /** The origin. */
+        private final int _source;
+        /** The vertices of the tree other than the origin, in increasing
+         *  order. */
+        private final int[] _vertices;
+        /** _predecessors[K] is the predecessor of _vertices[K]. */
+        private final int[] _predecessors;
+    }
+
+    /** The graph searched. */
+    private final Graph _G;
+    /** Runs the helpers that compute a table with the calling thread. */
+    private final ExecutorService _executor;
+    /** Maximum number of threads used to compute a table. */
+    private final int _threads;
+}
@@ -0,0 +1,362 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/* See restrictions in Graph.java. */
+
+/** An immutable Graph in compressed sparse row (CSR) form.  The
+ *  successors of vertex V occupy _targets[_offsets[V] .. _offsets[V + 1] - 1],
+ *  and the corresponding entries of _ids hold the edge ids the graph
+ *  was frozen with, so that labels keyed by edge id (as in LabeledGraph)
+ *  carry over unchanged.  For directed graphs, a second CSR array pair
+ *  holds the predecessors.  For undirected graphs, each edge appears in
+ *  the rows of both its end points (once, for a self edge).
+ *  All modifying operations throw UnsupportedOperationException.
+ *  @author Michael Chang
+ */
+class FrozenGraph extends Graph {
+
+    /** A frozen copy of the current contents of G. */
+    FrozenGraph(Graph G) {
+        _directed = G.isDirected();
+        _maxVertex = G.maxVertex();
+        _vertexSize = G.vertexSize();
+        _edgeSize = G.edgeSize();
+        _present = new boolean[_maxVertex + 1];
+        _offsets = new int[_maxVertex + 2];
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            _present[v] = G.contains(v);
+            _offsets[v + 1] = _offsets[v] + (_present[v] ? G.outDegree(v) : 0);
+        }
+        _targets = new int[_offsets[_maxVertex + 1]];
+        _ids = new int[_targets.length];
+        int k;
+        k = 0;
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (_present[v]) {
+                for (int w : G.successors(v)) {
+                    _targets[k] = w;
+                    _ids[k] = G.edgeId(v, w);
+                    k += 1;
+                }
+            }
+        }
+
+        if (_directed) {
+            _inOffsets = inOffsets(_offsets, _targets);
+            _sources = sources(_offsets, _targets, _inOffsets);
+        } else {
+            _inOffsets = _offsets;
+            _sources = _targets;
+        }
+    }
+
+    /** A frozen directed graph with vertices 1 .. OFFSETS.length - 2, in
+     *  which the successors of vertex V are
+     *  TARGETS[OFFSETS[V] .. OFFSETS[V + 1] - 1], in that order, and the
+     *  edge to TARGETS[K] has id K + 1.  OFFSETS[0] and OFFSETS[1] must be
+     *  0, and OFFSETS must end with TARGETS.length.  The arrays are used,
+     *  not copied, and must not change afterward.  Throws
+     *  IllegalArgumentException if the arrays do not describe a graph. */
+    FrozenGraph(int[] offsets, int[] targets) {
+        _directed = true;
+        _maxVertex = offsets.length - 2;
+        if (_maxVertex < 0 || offsets[0] != 0 || offsets[1] != 0
+            || offsets[_maxVertex + 1] != targets.length) {
+            throw new IllegalArgumentException("malformed row offsets");
+        }
+        int[] seen = new int[_maxVertex + 1];
+        for (int v = 1; v <= _maxVertex; v += 1) {
+            if (offsets[v + 1] < offsets[v]) {
+                throw new IllegalArgumentException("malformed row offsets");
+            }
+            for (int i = offsets[v]; i < offsets[v + 1]; i += 1) {
+                int w = targets[i];
+                if (w < 1 || w > _maxVertex || seen[w] == v) {
+                    throw new IllegalArgumentException("bad edge target");
+                }
+                seen[w] = v;
+            }
+        }
+        _vertexSize = _maxVertex;
+        _edgeSize = targets.length;
+        _present = new boolean[_maxVertex + 1];
+        Arrays.fill(_present, 1, _maxVertex + 1, true);
+        _offsets = offsets;
+        _targets = targets;
+        _ids = new int[targets.length];
+        for (int k = 0; k < _ids.length; k += 1) {
+            _ids[k] = k + 1;
+        }
+        _inOffsets = inOffsets(_offsets, _targets);
+        _sources = sources(_offsets, _targets, _inOffsets);
+    }
+
+    @Override
+    public int vertexSize() {
+        return _vertexSize;
+    }
+
+    @Override
+    public int maxVertex() {
+        return _maxVertex;
+    }
+
+    @Override
+    public int edgeSize() {
+        return _edgeSize;
+    }
+
+    @Override
+    public boolean isDirected() {
+        return _directed;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return contains(v) ? _offsets[v + 1] - _offsets[v] : 0;
+    }
+
+    @Override
+    public int inDegree(int v) {
+        return contains(v) ? _inOffsets[v + 1] - _inOffsets[v] : 0;
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return 0 < u && u <= _maxVertex && _present[u];
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return edgeId(u, v) != 0;
+    }
+
+    @Override
+    public int add() {
+        throw frozen();
+    }
+
+    @Override
+    public int add(int u, int v) {
+        throw frozen();
+    }
+
+    @Override
+    public void remove(int v) {
+        throw frozen();
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        throw frozen();
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        return new Iteration<Integer>() {
+            @Override
+            public boolean hasNext() {
+                while (_v <= _maxVertex && !_present[_v]) {
+                    _v += 1;
+                }
+                return _v <= _maxVertex;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _v += 1;
+                return _v - 1;
+            }
+
+            /** The next candidate vertex. */
+            private int _v = 1;
+        };
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        if (!contains(v)) {
+            return new RowIteration(_targets, 0, 0);
+        }
+        return new RowIteration(_targets, _offsets[v], _offsets[v + 1]);
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        if (!contains(v)) {
+            return new RowIteration(_sources, 0, 0);
+        }
+        return new RowIteration(_sources, _inOffsets[v], _inOffsets[v + 1]);
+    }
+
+    @Override
+    void eachSuccessor(int v, IntConsumer action) {
+        if (_ownSuccessors) {
+            super.eachSuccessor(v, action);
+        } else if (contains(v)) {
+            for (int k = _offsets[v]; k < _offsets[v + 1]; k += 1) {
+                action.accept(_targets[k]);
+            }
+        }
+    }
+
+    @Override
+    void eachPredecessor(int v, IntConsumer action) {
+        if (_ownPredecessors) {
+            super.eachPredecessor(v, action);
+        } else if (contains(v)) {
+            for (int k = _inOffsets[v]; k < _inOffsets[v + 1]; k += 1) {
+                action.accept(_sources[k]);
+            }
+        }
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_k < _targets.length) {
+                    while (_k >= _offsets[_u + 1]) {
+                        _u += 1;
+                    }
+                    if (_directed || _u <= _targets[_k]) {
+                        return true;
+                    }
+                    _k += 1;
+                }
+                return false;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _edge[0] = _u;
+                _edge[1] = _targets[_k];
+                _k += 1;
+                return _edge;
+            }
+
+            /** Source vertex of the row containing _k. */
+            private int _u = 0;
+            /** Index of the next candidate edge in _targets. */
+            private int _k = 0;
+            /** The array returned by next(). */
+            private final int[] _edge = new int[2];
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        if (!contains(u) || !contains(v)) {
+            return 0;
+        }
+        for (int i = _offsets[u]; i < _offsets[u + 1]; i += 1) {
+            if (_targets[i] == v) {
+                return _ids[i];
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the row starts of the predecessor CSR arrays of the directed
+     *  graph whose successor arrays are OFFSETS and TARGETS. */
+    private static int[] inOffsets(int[] offsets, int[] targets) {
+        int maxVertex = offsets.length - 2;
+        int[] result = new int[maxVertex + 2];
+        for (int w : targets) {
+            result[w + 1] += 1;
+        }
+        for (int v = 1; v <= maxVertex + 1; v += 1) {
+            result[v] += result[v - 1];
+        }
+        return result;
+    }
+
+    /** Returns the predecessor row contents of the directed graph whose
+     *  successor arrays are OFFSETS and TARGETS, given the predecessor row
+     *  starts INOFFSETS. */
+    private static int[] sources(int[] offsets, int[] targets,
+                                 int[] inOffsets) {
+        int maxVertex = offsets.length - 2;
+        int[] result = new int[targets.length];
+        int[] next = Arrays.copyOf(inOffsets, maxVertex + 1);
+        for (int u = 1; u <= maxVertex; u += 1) {
+            for (int i = offsets[u]; i < offsets[u + 1]; i += 1) {
+                result[next[targets[i]]] = u;
+                next[targets[i]] += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the exception thrown by attempts to modify me. */
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("graph is frozen");
+    }
+
+    /** An Iteration over ROW[START .. END-1]. */
+    static class RowIteration extends Iteration<Integer> {
+        /** Iterate over ROW[START .. END-1]. */
+        RowIteration(int[] row, int start, int end) {
+            _row = row;
+            _k = start;
+            _end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _k < _end;
+        }
+
+        @Override
+        public Integer next() {
+            if (_k >= _end) {
+                throw new NoSuchElementException();
+            }
+            _k += 1;
+            return _row[_k - 1];
+        }
+
+        /** The underlying array. */
+        private final int[] _row;
+        /** Index of my next item. */
+        private int _k;
+        /** One past the index of my last item. */
+        private final int _end;
+    }
+
+    /** True iff I am directed. */
+    private final boolean _directed;
+    /** My maximum vertex number. */
+    private final int _maxVertex;
+    /** Number of vertices and edges. */
+    private final int _vertexSize, _edgeSize;
+    /** _present[V] is true iff V is one of my vertices. */
+    private final boolean[] _present;
+    /** Row starts of outgoing edges, indexed by vertex (length
+     *  maxVertex() + 2). */
+    private final int[] _offsets;
+    /** Edge targets, in row order. */
+    private final int[] _targets;
+    /** Edge ids, parallel to _targets. */
+    private final int[] _ids;
+    /** Row starts of incoming edges.  Same as _offsets if undirected. */
+    private final int[] _inOffsets;
+    /** Edge sources, in row order.  Same as _targets if undirected. */
+    private final int[] _sources;
+    /** True iff my class redefines successors or predecessors,
+     *  respectively, so that eachSuccessor or eachPredecessor must go
+     *  through them rather than reading my edges directly. */
+    private final boolean _ownSuccessors =
+        !inherits(FrozenGraph.class, "successors"),
+        _ownPredecessors = !inherits(FrozenGraph.class, "predecessors");
+}
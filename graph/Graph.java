@@ -1,10 +1,18 @@
 package graph;
 
-/* Do not add or remove public or protected members, or modify the signatures of
- * any public methods.  Do not add or remove public classes.
+import java.util.function.IntConsumer;
+
+/* Do not remove public or protected members, or modify the signatures of
+ * any public methods.  Do not remove public classes.
+ *
+ * Add public or protected members, or public classes, only for clients
+ * outside the graph package that cannot do without them, and document
+ * each in the doc comment of its class as part of the API.  Anything
+ * used only within the package stays package private.  Public classes
+ * whose names contain "Testing" may also be added (see UnitTest).
  *
- * You may make changes that don't affect the API (much) as seen from outside
- * the graph package:
+ * You may make other changes that don't affect the API (much) as seen from
+ * outside the graph package:
  *   + You may make methods in GraphObj abstract, if you want different
  *     implementations in DirectedGraph and UndirectedGraph.
  *   + You may add bodies to abstract methods, modify existing bodies,
@@ -100,6 +108,42 @@ public abstract class Graph {
 
     /* Non-public methods for internal use. */
 
+    /** Call ACTION on each successor of V, in the order of successors(V),
+     *  or on none if V is not one of my vertices.  This is the primitive
+     *  counterpart of successors for the inner loops of searches.  By
+     *  default, it iterates over successors(V); graphs that keep their
+     *  edges as ints override it to reach each successor without
+     *  allocating an Iteration or boxing vertex numbers, unless their
+     *  class redefines successors (see inherits).  ACTION must not
+     *  modify me. */
+    void eachSuccessor(int v, IntConsumer action) {
+        for (int w : successors(v)) {
+            action.accept(w);
+        }
+    }
+
+    /** Call ACTION on each predecessor of V, as eachSuccessor does for
+     *  successors. */
+    void eachPredecessor(int v, IntConsumer action) {
+        for (int u : predecessors(v)) {
+            action.accept(u);
+        }
+    }
+
+    /** Returns true iff my class takes the public method NAME(int) from
+     *  BASE rather than redefining it.  Graphs whose eachSuccessor or
+     *  eachPredecessor bypass successors or predecessors check this once,
+     *  when constructed, and fall back to the iterations of any subclass
+     *  that redefines them. */
+    final boolean inherits(Class<? extends Graph> base, String name) {
+        try {
+            return getClass().getMethod(name, int.class).getDeclaringClass()
+                == base;
+        } catch (NoSuchMethodException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
     /** Throw exception if V is not one of my vertices. */
     protected void checkMyVertex(int v) {
         if (!contains(v)) {
@@ -1,5 +1,7 @@
 package graph;
 
+import java.util.function.IntConsumer;
+
 /** A Graph that delegates all its operations to another, preexisting
  *  Graph object.  This is intended to be extended, and selected methods
  *  overridden, as needed.
@@ -86,6 +88,28 @@ public class GraphFilter extends Graph {
         return _G.predecessors(v);
     }
 
+    /** Passes ACTION through to my underlying graph, unless my class
+     *  redefines successors. */
+    @Override
+    void eachSuccessor(int v, IntConsumer action) {
+        if (_ownSuccessors) {
+            super.eachSuccessor(v, action);
+        } else {
+            _G.eachSuccessor(v, action);
+        }
+    }
+
+    /** Passes ACTION through to my underlying graph, unless my class
+     *  redefines predecessors. */
+    @Override
+    void eachPredecessor(int v, IntConsumer action) {
+        if (_ownPredecessors) {
+            super.eachPredecessor(v, action);
+        } else {
+            _G.eachPredecessor(v, action);
+        }
+    }
+
     @Override
     public Iteration<int[]> edges() {
         return _G.edges();
@@ -103,6 +127,12 @@ public class GraphFilter extends Graph {
 
     /** My underlying graph. */
     private final Graph _G;
+    /** True iff my class redefines successors or predecessors,
+     *  respectively, so that eachSuccessor or eachPredecessor must go
+     *  through them rather than reading my edges directly. */
+    private final boolean _ownSuccessors =
+        !inherits(GraphFilter.class, "successors"),
+        _ownPredecessors = !inherits(GraphFilter.class, "predecessors");
 }
 
 
@@ -1,8 +1,9 @@
 package graph;
 
 import java.util.ArrayList;
-import javafx.util.Pair;
-import java.util.PriorityQueue;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
 
 /* See restrictions in Graph.java. */
 
@@ -19,24 +20,37 @@ abstract class GraphObj extends Graph {
     /** The number of edges in a Graph object. */
     private int _numEdges;
 
-    /** Stores whether two vertices have an edge between them. */
+    /** Stores whether two vertices have an edge between them.  In an
+     *  undirected graph, each edge is stored in the lists of both of its
+     *  end points (once, for a self edge). */
     private ArrayList<ArrayList<Integer>> _graph;
 
+    /** The sources of the incoming edges of each vertex in a directed
+     *  graph, so that _inGraph.get(V) contains U iff _graph.get(U) contains
+     *  V.  Its elements are null in an undirected graph. */
+    private ArrayList<ArrayList<Integer>> _inGraph;
+
     /** The last index of a vertex in _graph. */
     private int _maxVertex;
 
-    /** Vertex indices that were removed from _graph. */
-    private PriorityQueue<Integer> _removed;
-
-    /** ArrayList of all edges in a graph. */
-    private ArrayList<Pair<Integer, Integer>> _edgeList;
-
-    /** List of all Pairs. */
-    private ArrayList<Pair<Integer, Integer>> _pairList;
+    /** The unused vertex numbers no greater than _maxVertex.  All larger
+     *  numbers are also unused. */
+    private BitSet _free;
 
-    /** List used for edgeID where ID is the element index of that pair. */
-    private ArrayList<Pair<Integer, Integer>> _idList;
+    /** Maps each pair (U, V) ever added as an edge, packed by edgeKey,
+     *  to its edge id.  Ids are assigned consecutively
+     *  from 1 and are kept when an edge is removed, so that re-adding the
+     *  edge gives it back its old id. */
+    private LongIntMap _edgeIds;
 
+    /** The ids of the edges currently present. */
+    private BitSet _liveEdges;
+    /** True iff my class redefines successors or predecessors,
+     *  respectively, so that eachSuccessor or eachPredecessor must go
+     *  through them rather than reading my edges directly. */
+    private final boolean _ownSuccessors =
+        !inherits(GraphObj.class, "successors"),
+        _ownPredecessors = !inherits(GraphObj.class, "predecessors");
 
 
     /** A new, empty Graph. */
@@ -46,11 +60,11 @@ abstract class GraphObj extends Graph {
         _maxVertex = 0;
         _graph = new ArrayList<>();
         _graph.add(null);
-        _removed = new PriorityQueue<>();
-        _edgeList = new ArrayList<>();
-        _pairList = new ArrayList<>();
-        _idList = new ArrayList<>();
-        _idList.add(null);
+        _inGraph = new ArrayList<>();
+        _inGraph.add(null);
+        _free = new BitSet();
+        _edgeIds = new LongIntMap();
+        _liveEdges = new BitSet();
     }
 
     @Override
@@ -81,7 +95,13 @@ abstract class GraphObj extends Graph {
     }
 
     @Override
-    public abstract int inDegree(int v);
+    public int inDegree(int v) {
+        if (contains(v)) {
+            return incoming(v).size();
+        } else {
+            return 0;
+        }
+    }
 
     @Override
     public boolean contains(int u) {
@@ -95,54 +115,75 @@ abstract class GraphObj extends Graph {
         } else if (!contains(v)) {
             return false;
         } else {
-            return _graph.get(u).contains(v);
+            return _liveEdges.get(_edgeIds.get(edgeKey(u, v)));
         }
     }
 
     @Override
     public int add() {
-        _numVertices += 1;
-        _maxVertex = Math.max(_numVertices, _maxVertex);
-        if (_removed.isEmpty()) {
-            _graph.add(new ArrayList<>());
-            return _numVertices;
+        int v = _free.nextSetBit(1);
+        if (v < 0) {
+            v = _maxVertex + 1;
+            _maxVertex = v;
         } else {
-            _graph.set(_removed.peek(), new ArrayList<>());
-            return _removed.remove();
+            _free.clear(v);
         }
+        if (v == _graph.size()) {
+            _graph.add(null);
+            _inGraph.add(null);
+        }
+        _graph.set(v, new ArrayList<>());
+        _inGraph.set(v, isDirected() ? new ArrayList<>() : null);
+        _numVertices += 1;
+        return v;
     }
 
     @Override
     public int add(int u, int v) {
         assert contains(u) && contains(v);
-        if (!_graph.get(u).contains(v)) {
+        long key = edgeKey(u, v);
+        int id = _edgeIds.get(key);
+        if (id == 0) {
+            id = _edgeIds.size() + 1;
+            _edgeIds.put(key, id);
+        }
+        if (!_liveEdges.get(id)) {
             _graph.get(u).add(v);
-            _numEdges += 1;
-            _edgeList.add(pair(new Pair<>(u, v)));
-            if (!_idList.contains(pair(new Pair<>(u, v)))) {
-                _idList.add(pair(new Pair<>(u, v)));
-
+            if (isDirected() || u != v) {
+                incoming(v).add(u);
             }
+            _liveEdges.set(id);
+            _numEdges += 1;
         }
-        return edgeId(u, v);
+        return id;
     }
 
     @Override
     public void remove(int v) {
         if (contains(v)) {
-            Iteration<int[]> edges = edges();
-            for (int[] edge : edges) {
-                if (edge[0] == v || edge[1] == v) {
-                    _numEdges -= 1;
-                    _graph.get(edge[0]).remove(((Integer) edge[1]));
-                    _edgeList.remove(pair(new Pair<>(edge[0], edge[1])));
+            for (int w : _graph.get(v)) {
+                if (w != v) {
+                    incoming(w).remove((Integer) v);
+                }
+                _liveEdges.clear(_edgeIds.get(edgeKey(v, w)));
+                _numEdges -= 1;
+            }
+            if (isDirected()) {
+                for (int u : _inGraph.get(v)) {
+                    if (u != v) {
+                        _graph.get(u).remove((Integer) v);
+                        _liveEdges.clear(_edgeIds.get(edgeKey(u, v)));
+                        _numEdges -= 1;
+                    }
                 }
             }
             _graph.set(v, null);
-            _removed.offer(v);
+            _inGraph.set(v, null);
+            _free.set(v);
             _numVertices -= 1;
-            if (_maxVertex != findMaxVertex()) {
-                _maxVertex = findMaxVertex();
+            if (v == _maxVertex) {
+                _maxVertex = _free.previousClearBit(v);
+                _free.clear(_maxVertex + 1, v + 1);
             }
         }
     }
@@ -150,20 +191,21 @@ abstract class GraphObj extends Graph {
     @Override
     public void remove(int u, int v) {
         if (contains(u, v)) {
-            int index = _edgeList.indexOf(pair(new Pair<>(u, v)));
-            _graph.get(u).remove(_graph.get(u).indexOf(v));
-            _edgeList.remove(index);
+            _graph.get(u).remove((Integer) v);
+            if (isDirected() || u != v) {
+                incoming(v).remove((Integer) u);
+            }
+            _liveEdges.clear(_edgeIds.get(edgeKey(u, v)));
             _numEdges -= 1;
         }
     }
 
     @Override
     public Iteration<Integer> vertices() {
-        ArrayList<Integer> vertices = new ArrayList<>();
-        for (int i = 1; i <= maxVertex(); i += 1) {
-            if (!_removed.contains(i)) {
-                vertices.add(i);
-            }
+        ArrayList<Integer> vertices = new ArrayList<>(_numVertices);
+        for (int v = _free.nextClearBit(1); v <= _maxVertex;
+             v = _free.nextClearBit(v + 1)) {
+            vertices.add(v);
         }
         return Iteration.iteration(vertices);
     }
@@ -178,46 +220,112 @@ abstract class GraphObj extends Graph {
     }
 
     @Override
-    public abstract Iteration<Integer> predecessors(int v);
+    public Iteration<Integer> predecessors(int v) {
+        if (contains(v)) {
+            return Iteration.iteration(incoming(v));
+        } else {
+            return Iteration.iteration(java.util.Collections.emptyIterator());
+        }
+    }
 
     @Override
-    public Iteration<int[]> edges() {
-        ArrayList<int[]> result = new ArrayList<>();
-        for (Pair<Integer, Integer> pair: _edgeList) {
-            int[] edge = {pair.getKey(), pair.getValue()};
-            result.add(edge);
+    void eachSuccessor(int v, IntConsumer action) {
+        if (_ownSuccessors) {
+            super.eachSuccessor(v, action);
+        } else if (contains(v)) {
+            forEach(_graph.get(v), action);
+        }
+    }
+
+    @Override
+    void eachPredecessor(int v, IntConsumer action) {
+        if (_ownPredecessors) {
+            super.eachPredecessor(v, action);
+        } else if (contains(v)) {
+            forEach(incoming(v), action);
         }
-        return Iteration.iteration(result);
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_u <= maxVertex()) {
+                    ArrayList<Integer> out = _graph.get(_u);
+                    while (out != null && _k < out.size()) {
+                        if (isDirected() || _u <= out.get(_k)) {
+                            return true;
+                        }
+                        _k += 1;
+                    }
+                    _u += 1;
+                    _k = 0;
+                }
+                return false;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _edge[0] = _u;
+                _edge[1] = _graph.get(_u).get(_k);
+                _k += 1;
+                return _edge;
+            }
+
+            /** The source vertex of the next edge. */
+            private int _u = 1;
+            /** Index of the next edge in _graph.get(_u). */
+            private int _k = 0;
+            /** The array returned by next(). */
+            private final int[] _edge = new int[2];
+        };
+    }
+
+    /** Returns an immutable copy of my current contents in compressed
+     *  sparse row form, with the same vertex numbers and edge ids as mine.
+     *  It is intended for graphs that are built once and then only
+     *  searched.  Later changes to me do not affect the copy, and the copy
+     *  itself cannot be modified. */
+    public Graph freeze() {
+        return new FrozenGraph(this);
     }
 
     @Override
     protected int edgeId(int u, int v) {
-        if (contains(u, v) && _idList.contains(pair(new Pair<>(u, v)))) {
-            return _idList.indexOf(pair(new Pair<>(u, v)));
+        if (contains(u, v)) {
+            return _edgeIds.get(edgeKey(u, v));
         } else {
             return 0;
         }
     }
 
-    /** Returns unique Pair so that == compare works.
-     * @param p Pair. */
-    private Pair<Integer, Integer> pair(Pair<Integer, Integer> p) {
-        for (int i = 0; i < _pairList.size(); i += 1) {
-            if (_pairList.get(i).equals(p)) {
-                return _pairList.get(i);
-            }
+    /** Returns the list of the other end points of V's incoming edges,
+     *  which is the same as its outgoing list if I am undirected.  V must
+     *  be one of my vertices. */
+    private ArrayList<Integer> incoming(int v) {
+        return isDirected() ? _inGraph.get(v) : _graph.get(v);
+    }
+
+    /** Call ACTION on each element of VERTICES, in order, indexing rather
+     *  than iterating so as to allocate nothing. */
+    private static void forEach(ArrayList<Integer> vertices,
+                                IntConsumer action) {
+        for (int k = 0; k < vertices.size(); k += 1) {
+            action.accept(vertices.get(k));
         }
-        _pairList.add(p);
-        return p;
     }
 
-    /** Returns the max vertex that is not null. */
-    private int findMaxVertex() {
-        for (int i = maxVertex(); i > 0; i -= 1) {
-            if (_graph.get(i) != null) {
-                return i;
-            }
+    /** Returns the key of the edge (U, V) in _edgeIds.  The key of an
+     *  undirected edge does not depend on the order of its end points. */
+    private long edgeKey(int u, int v) {
+        if (isDirected() || u <= v) {
+            return LongIntMap.pack(u, v);
+        } else {
+            return LongIntMap.pack(v, u);
         }
-        return 0;
     }
 }
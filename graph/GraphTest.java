@@ -288,6 +288,791 @@ public class GraphTest {
         assertEquals(2, g.edgeSize());
     }
 
+    @Test
+    public void testDirectedIncomingAfterRemove() {
+        DirectedGraph g = makeDirected();
+        assertEquals(2, g.inDegree(2));
+        g.remove(1, 2);
+        assertEquals(1, g.inDegree(2));
+        for (int p : g.predecessors(2)) {
+            assertEquals(3, p);
+        }
+        g.remove(3);
+        assertEquals(0, g.inDegree(1));
+        assertEquals(0, g.inDegree(2));
+        assertEquals(0, g.outDegree(1));
+        assertFalse(g.predecessors(2).hasNext());
+        assertEquals(1, g.edgeSize());
+        assertEquals(1, g.inDegree(4));
+        g.remove(4);
+        assertEquals(0, g.edgeSize());
+        assertEquals(3, g.add());
+        assertEquals(0, g.inDegree(3));
+        assertEquals(1, g.add(1, 3));
+        assertEquals(1, g.inDegree(3));
+    }
+
+    @Test
+    public void testVertexReuse() {
+        DirectedGraph g = new DirectedGraph();
+        for (int v = 1; v <= 200; v += 1) {
+            assertEquals(v, g.add());
+        }
+        for (int v = 200; v >= 2; v -= 3) {
+            g.remove(v);
+        }
+        g.remove(199);
+        assertEquals(132, g.vertexSize());
+        assertEquals(198, g.maxVertex());
+        java.util.List<Integer> vertices = toList(g.vertices());
+        assertEquals(132, vertices.size());
+        for (int v : vertices) {
+            assertTrue(g.contains(v));
+        }
+        assertEquals(2, g.add());
+        assertEquals(5, g.add());
+        for (int v = 1; v <= 198; v += 1) {
+            g.remove(v);
+        }
+        assertEquals(0, g.vertexSize());
+        assertEquals(0, g.maxVertex());
+        assertFalse(g.vertices().hasNext());
+        assertEquals(1, g.add());
+        assertEquals(2, g.add());
+        assertEquals(2, g.maxVertex());
+        assertEquals(1, g.add(2, 1));
+        assertEquals(Integer.valueOf(2), g.predecessors(1).next());
+    }
+
+    @Test
+    public void testUndirectedAdjacency() {
+        UndirectedGraph u = makeUndirected();
+        assertEquals(1, u.degree(4));
+        assertEquals(2, u.inDegree(3));
+        u.remove(2, 1);
+        assertFalse(u.contains(1, 2));
+        assertEquals(1, u.degree(1));
+        assertEquals(1, u.degree(2));
+        u.remove(4, 4);
+        assertEquals(0, u.degree(4));
+        assertEquals(2, u.edgeSize());
+        u.remove(3);
+        assertEquals(0, u.edgeSize());
+        assertEquals(0, u.degree(1));
+        assertFalse(u.neighbors(2).hasNext());
+        assertEquals(3, u.add(2, 1));
+        assertEquals(1, u.degree(2));
+    }
+
+    @Test
+    public void testTraversalsReused() {
+        DirectedGraph g = makeDirected();
+        final StringBuilder order = new StringBuilder();
+        DepthFirstTraversal dfs = new DepthFirstTraversal(g) {
+            @Override
+            protected boolean visit(int v) {
+                order.append(v);
+                return true;
+            }
+
+            @Override
+            protected boolean postVisit(int v) {
+                order.append(-v);
+                return true;
+            }
+        };
+        dfs.traverse(1);
+        assertEquals("12-23-3-1", order.toString());
+        order.setLength(0);
+        dfs.traverse(3);
+        assertEquals("", order.toString());
+        dfs.clear();
+        dfs.traverse(3);
+        assertEquals("312-2-1-3", order.toString());
+
+        final StringBuilder levels = new StringBuilder();
+        BreadthFirstTraversal bfs = new BreadthFirstTraversal(g) {
+            @Override
+            protected boolean visit(int v) {
+                levels.append(v);
+                return true;
+            }
+        };
+        bfs.traverse(3);
+        bfs.clear();
+        bfs.traverse(1);
+        assertEquals("321132", levels.toString());
+    }
+
+    @Test
+    public void testIndexedHeap() {
+        final double[] pri = {0, 5, 3, 3, 9, 1};
+        IndexedHeap heap = new IndexedHeap(5, v -> pri[v]);
+        for (int v = 1; v <= 5; v += 1) {
+            heap.add(v);
+        }
+        assertEquals(5, heap.size());
+        assertTrue(heap.contains(4));
+        pri[4] = 2;
+        heap.add(4);
+        assertEquals(5, heap.size());
+        assertTrue(heap.remove((Object) 1));
+        assertFalse(heap.contains(1));
+        assertEquals(5, (int) heap.remove());
+        assertEquals(4, (int) heap.remove());
+        assertEquals(2, (int) heap.remove());
+        assertEquals(3, (int) heap.remove());
+        assertTrue(heap.isEmpty());
+        assertEquals(null, heap.poll());
+    }
+
+    @Test
+    public void testShortestPaths() {
+        DirectedGraph g = makeDirected();
+        final LabeledGraph<String, Double> lg = new LabeledGraph<>(g);
+        lg.setLabel(1, 3, 1.0);
+        lg.setLabel(3, 2, 1.5);
+        lg.setLabel(1, 2, 3.0);
+        lg.setLabel(4, 4, 1.0);
+        lg.setLabel(3, 1, 1.0);
+        SimpleShortestPaths paths = new SimpleShortestPaths(lg, 1) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return lg.getLabel(u, v);
+            }
+        };
+        paths.setPaths();
+        assertEquals(0.0, paths.getWeight(1), 1e-9);
+        assertEquals(2.5, paths.getWeight(2), 1e-9);
+        assertEquals(3, paths.getPredecessor(2));
+        assertEquals(Double.POSITIVE_INFINITY, paths.getWeight(4), 0);
+        assertEquals(java.util.Arrays.asList(1, 3, 2), paths.pathTo(2));
+    }
+
+    @Test
+    public void testSharedWorkspace() {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < 6; i += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 6; v += 1) {
+            g.add(v, v + 1);
+        }
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        SimpleShortestPaths fromOne = new SimpleShortestPaths(g, 1, 0, work) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return 1.0;
+            }
+        };
+        fromOne.setPaths();
+        assertEquals(5.0, fromOne.getWeight(6), 0);
+        SimpleShortestPaths toTwo = new SimpleShortestPaths(g, 4, 2, work) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return 1.0;
+            }
+        };
+        toTwo.setPaths();
+        assertEquals(2.0, toTwo.getWeight(2), 0);
+        assertEquals(java.util.Arrays.asList(4, 3, 2), toTwo.pathTo());
+        assertEquals(0, toTwo.getPredecessor(1));
+        assertEquals(Double.POSITIVE_INFINITY, toTwo.getWeight(1), 0);
+        fromOne.setPaths();
+        assertEquals(3.0, fromOne.getWeight(4), 0);
+    }
+
+    /** Shortest paths in a SIDE x SIDE grid of vertices, stored in G, with
+     *  edge weights in WEIGHTS (indexed by edge id), from SOURCE to DEST,
+     *  using WORK, estimating remaining distances by grid distance. */
+    private SimpleShortestPaths gridPaths(Graph g, int side, double[] weights,
+                                          int source, int dest,
+                                          SimpleShortestPaths.Workspace work) {
+        return new SimpleShortestPaths(g, source, dest, work) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return weights[g.edgeId(u, v)];
+            }
+
+            @Override
+            protected double estimatedDistance(int v) {
+                return gridDistance(v, dest);
+            }
+
+            @Override
+            protected double estimatedDistanceFromSource(int v) {
+                return gridDistance(source, v);
+            }
+
+            /** Returns the grid distance between U and V. */
+            private double gridDistance(int u, int v) {
+                return Math.abs((u - 1) / side - (v - 1) / side)
+                    + Math.abs((u - 1) % side - (v - 1) % side);
+            }
+        };
+    }
+
+    /** Returns a SIDE x SIDE grid of vertices in which most pairs of
+     *  neighbors are joined by edges in both directions, chosen using
+     *  RAND. */
+    private DirectedGraph randomGrid(int side, java.util.Random rand) {
+        DirectedGraph g = new DirectedGraph();
+        for (int k = 0; k < side * side; k += 1) {
+            g.add();
+        }
+        for (int v = 1; v <= side * side; v += 1) {
+            int[] nbrs = { v % side == 0 ? 0 : v + 1,
+                           v + side > side * side ? 0 : v + side };
+            for (int w : nbrs) {
+                if (w != 0 && rand.nextInt(5) != 0) {
+                    g.add(v, w);
+                    g.add(w, v);
+                }
+            }
+        }
+        return g;
+    }
+
+    /** Returns random weights in [1, 2) for the edges of G, indexed by
+     *  edge id, chosen using RAND. */
+    private double[] randomWeights(Graph g, java.util.Random rand) {
+        double[] weights = new double[g.edgeSize() + 1];
+        for (int e = 1; e < weights.length; e += 1) {
+            weights[e] = 1 + rand.nextDouble();
+        }
+        return weights;
+    }
+
+    @Test
+    public void testBidirectional() {
+        final int side = 12;
+        java.util.Random rand = new java.util.Random(42);
+        DirectedGraph g = randomGrid(side, rand);
+        double[] weights = randomWeights(g, rand);
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        for (int trial = 0; trial < 50; trial += 1) {
+            int source = 1 + rand.nextInt(side * side),
+                dest = 1 + rand.nextInt(side * side);
+            SimpleShortestPaths one =
+                gridPaths(g, side, weights, source, dest,
+                          new SimpleShortestPaths.Workspace());
+            one.setPaths();
+            SimpleShortestPaths two =
+                gridPaths(g, side, weights, source, dest, work);
+            two.setBidirectional(true);
+            two.setPaths();
+            assertEquals(one.getWeight(dest), two.getWeight(dest), 1e-9);
+            if (one.getWeight(dest) < Double.POSITIVE_INFINITY) {
+                java.util.List<Integer> path = two.pathTo();
+                assertEquals(source, (int) path.get(0));
+                double total = 0;
+                for (int k = 1; k < path.size(); k += 1) {
+                    assertTrue(g.contains(path.get(k - 1), path.get(k)));
+                    total += weights[g.edgeId(path.get(k - 1), path.get(k))];
+                }
+                assertEquals(one.getWeight(dest), total, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceMatrix() {
+        final int side = 10;
+        java.util.Random rand = new java.util.Random(17);
+        DirectedGraph g = randomGrid(side, rand);
+        final double[] weights = randomWeights(g, rand);
+        int[] origins = { 1, 55, 100, 23, 55 },
+            targets = { 100, 1, 47, 47, 12, 88 };
+        DistanceMatrix matrix = new DistanceMatrix(g, 3) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return weights[g.edgeId(u, v)];
+            }
+        };
+        DistanceMatrix.Tree[] trees = new DistanceMatrix.Tree[origins.length];
+        double[][] table = matrix.distances(origins, targets, trees);
+        assertEquals(origins.length, table.length);
+        for (int i = 0; i < origins.length; i += 1) {
+            SimpleShortestPaths all = new SimpleShortestPaths(g, origins[i]) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return weights[g.edgeId(u, v)];
+                }
+            };
+            all.setPaths();
+            assertEquals(origins[i], trees[i].getSource());
+            for (int j = 0; j < targets.length; j += 1) {
+                assertEquals(all.getWeight(targets[j]), table[i][j], 1e-9);
+                java.util.List<Integer> path = trees[i].pathTo(targets[j]);
+                if (table[i][j] == Double.POSITIVE_INFINITY) {
+                    assertEquals(null, path);
+                    continue;
+                }
+                assertEquals(origins[i], (int) path.get(0));
+                assertEquals(targets[j], (int) path.get(path.size() - 1));
+                double total = 0;
+                for (int k = 1; k < path.size(); k += 1) {
+                    total += weights[g.edgeId(path.get(k - 1), path.get(k))];
+                }
+                assertEquals(table[i][j], total, 1e-9);
+            }
+        }
+        assertEquals(0, matrix.distances(new int[0], targets).length);
+
+        java.util.concurrent.ExecutorService pool =
+            java.util.concurrent.Executors.newFixedThreadPool(2);
+        try {
+            DistanceMatrix pooled = new DistanceMatrix(g, pool, 4) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return weights[g.edgeId(u, v)];
+                }
+            };
+            for (int trial = 0; trial < 2; trial += 1) {
+                double[][] again = pooled.distances(origins, targets);
+                for (int i = 0; i < origins.length; i += 1) {
+                    assertArrayEquals(table[i], again[i], 0);
+                }
+            }
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTargetsStopEarly() {
+        DirectedGraph g = new DirectedGraph();
+        for (int k = 0; k < 10; k += 1) {
+            g.add();
+        }
+        for (int v = 1; v < 10; v += 1) {
+            g.add(v, v + 1);
+        }
+        SimpleShortestPaths paths =
+            new SimpleShortestPaths(g, 1, new int[] { 4, 2, 4 }) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return 1;
+                }
+            };
+        paths.setPaths();
+        assertEquals(3.0, paths.getWeight(4), 0);
+        assertEquals(3, paths.getSettledCount());
+        assertEquals(Double.POSITIVE_INFINITY, paths.getWeight(6), 0);
+        assertEquals(java.util.Arrays.asList(2, 4),
+                     paths.getSettledTargets());
+        assertEquals(java.util.Arrays.asList(1, 2, 3, 4), paths.pathTo(4));
+    }
+
+    @Test
+    public void testNearestTargets() {
+        final int side = 10;
+        java.util.Random rand = new java.util.Random(5);
+        DirectedGraph g = randomGrid(side, rand);
+        final double[] weights = randomWeights(g, rand);
+        int[] targets = { 7, 93, 45, 60, 12, 81, 33 };
+        SimpleShortestPaths all = new SimpleShortestPaths(g, 50) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return weights[g.edgeId(u, v)];
+            }
+        };
+        all.setPaths();
+        Integer[] byDistance = { 7, 93, 45, 60, 12, 81, 33 };
+        java.util.Arrays.sort(byDistance,
+                              (a, b) -> Double.compare(all.getWeight(a),
+                                                       all.getWeight(b)));
+        for (int k = 0; k <= targets.length + 1; k += 1) {
+            SimpleShortestPaths nearest =
+                new SimpleShortestPaths(g, 50, targets, k) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return weights[g.edgeId(u, v)];
+                    }
+                };
+            nearest.setPaths();
+            java.util.List<Integer> found = nearest.getSettledTargets();
+            int reachable;
+            reachable = 0;
+            for (int t : targets) {
+                if (all.getWeight(t) < Double.POSITIVE_INFINITY) {
+                    reachable += 1;
+                }
+            }
+            assertEquals(Math.min(k, reachable), found.size());
+            for (int i = 0; i < found.size(); i += 1) {
+                int t = found.get(i);
+                assertEquals((int) byDistance[i], t);
+                assertEquals(all.getWeight(t), nearest.getWeight(t), 1e-9);
+                assertEquals(50, (int) nearest.pathTo(t).get(0));
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchy() {
+        final int side = 8;
+        java.util.Random rand = new java.util.Random(61);
+        DirectedGraph g = randomGrid(side, rand);
+        g.add(5, 40);
+        final double[] weights = randomWeights(g, rand);
+        ContractionHierarchy ch = new ContractionHierarchy(g) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return weights[g.edgeId(u, v)];
+            }
+        };
+        ch.contract();
+        for (int source = 1; source <= side * side; source += 1) {
+            SimpleShortestPaths paths = new SimpleShortestPaths(g, source) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return weights[g.edgeId(u, v)];
+                }
+            };
+            paths.setPaths();
+            for (int dest = 1; dest <= side * side; dest += 1) {
+                double expected = paths.getWeight(dest);
+                assertEquals(expected, ch.distance(source, dest), 1e-9);
+                java.util.List<Integer> path = ch.path(source, dest);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(source, (int) path.get(0));
+                assertEquals(dest, (int) path.get(path.size() - 1));
+                double total = 0;
+                for (int k = 1; k < path.size(); k += 1) {
+                    int u = path.get(k - 1), v = path.get(k);
+                    assertTrue(g.contains(u, v));
+                    total += weights[g.edgeId(u, v)];
+                }
+                assertEquals(expected, total, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testForEachSuccessor() {
+        DirectedGraph d = makeDirected();
+        d.remove(2);
+        Graph reversed = new GraphFilter(d) {
+            @Override
+            public Iteration<Integer> successors(int v) {
+                return super.predecessors(v);
+            }
+        };
+        Graph[] graphs = { d, d.freeze(), new GraphFilter(d),
+                           makeUndirected(), makeUndirected().freeze(),
+                           new GraphFilter(makeUndirected()) };
+        for (Graph g : graphs) {
+            for (int v = 0; v <= 5; v += 1) {
+                assertEquals(toList(g.successors(v)), successorList(g, v));
+                assertEquals(toList(g.predecessors(v)),
+                             predecessorList(g, v));
+            }
+        }
+        assertEquals(toList(d.predecessors(1)), successorList(reversed, 1));
+        assertEquals(toList(d.successors(1)), predecessorList(reversed, 1));
+
+        DirectedGraph flipped = new DirectedGraph() {
+            @Override
+            public Iteration<Integer> successors(int v) {
+                return super.predecessors(v);
+            }
+        };
+        Graph frozen = new FrozenGraph(d) {
+            @Override
+            public Iteration<Integer> predecessors(int v) {
+                return super.successors(v);
+            }
+        };
+        flipped.add();
+        flipped.add();
+        flipped.add();
+        flipped.add(1, 2);
+        flipped.add(3, 2);
+        for (int v = 1; v <= 3; v += 1) {
+            assertEquals(toList(flipped.predecessors(v)),
+                         successorList(flipped, v));
+            assertEquals(toList(flipped.predecessors(v)),
+                         predecessorList(flipped, v));
+            assertEquals(toList(d.successors(v)), predecessorList(frozen, v));
+        }
+    }
+
+    /** Returns the remaining vertices of ITER, in order. */
+    private static java.util.List<Integer> toList(Iteration<Integer> iter) {
+        java.util.ArrayList<Integer> result = new java.util.ArrayList<>();
+        for (int v : iter) {
+            result.add(v);
+        }
+        return result;
+    }
+
+    /** Returns the vertices that G.eachSuccessor(V, ...) passes on, in
+     *  order. */
+    private static java.util.List<Integer> successorList(Graph g, int v) {
+        java.util.ArrayList<Integer> result = new java.util.ArrayList<>();
+        g.eachSuccessor(v, result::add);
+        return result;
+    }
+
+    /** Returns the vertices that G.eachPredecessor(V, ...) passes on,
+     *  in order. */
+    private static java.util.List<Integer> predecessorList(Graph g, int v) {
+        java.util.ArrayList<Integer> result = new java.util.ArrayList<>();
+        g.eachPredecessor(v, result::add);
+        return result;
+    }
+
+    @Test
+    public void testVersionedGraph() {
+        DirectedGraph d = makeDirected();
+        d.remove(2);
+        VersionedGraph g = new VersionedGraph(d);
+        VersionedGraph.Version v0 = g.current();
+        assertEquals(3, v0.vertexSize());
+        assertEquals(4, v0.maxVertex());
+        assertEquals(3, v0.edgeSize());
+        assertEquals(toList(d.vertices()), toList(v0.vertices()));
+        assertEquals(toList(d.successors(1)), toList(v0.successors(1)));
+        assertEquals(toList(d.predecessors(1)), toList(v0.predecessors(1)));
+        assertEquals(d.edgeId(3, 1), v0.edgeId(3, 1));
+
+        VersionedGraph.Editor edit = g.edit();
+        assertEquals(2, edit.add());
+        assertEquals(6, edit.add(1, 2));
+        edit.remove(3, 1);
+        edit.remove(4);
+        assertSame(v0, g.current());
+        VersionedGraph.Version v1 = edit.publish();
+        assertSame(v1, g.current());
+        assertTrue(v1.number() > v0.number());
+        assertFalse(v0.contains(2));
+        assertTrue(v0.contains(3, 1));
+        assertTrue(v0.contains(4, 4));
+        assertEquals(3, v1.maxVertex());
+        assertEquals(2, v1.edgeSize());
+        assertTrue(v1.contains(1, 2));
+        assertFalse(v1.contains(3, 1));
+        assertEquals(java.util.Arrays.asList(1), toList(v1.predecessors(2)));
+
+        edit = g.edit();
+        assertEquals(5, edit.add(3, 1));
+        assertEquals(5, v0.edgeId(3, 1));
+        VersionedGraph.Editor stale = g.edit();
+        edit.publish();
+        stale.add(1, 1);
+        try {
+            stale.publish();
+            fail("published a stale edit");
+        } catch (IllegalStateException excp) {
+            assertFalse(g.current().contains(1, 1));
+        }
+        try {
+            v1.add();
+            fail("modified a version");
+        } catch (UnsupportedOperationException excp) {
+            assertEquals(3, v1.vertexSize());
+        }
+    }
+
+    @Test
+    public void testVersionedGraphSharing() {
+        UndirectedGraph u = new UndirectedGraph();
+        for (int v = 1; v <= 10 * VersionedGraph.BLOCK_SIZE; v += 1) {
+            u.add();
+            if (v > 1) {
+                u.add(v - 1, v);
+            }
+        }
+        VersionedGraph g = new VersionedGraph(u);
+        VersionedGraph.Version v0 = g.current();
+        VersionedGraph.Editor edit = g.edit();
+        edit.remove(2, 3);
+        VersionedGraph.Version v1 = edit.publish();
+        assertEquals(u.edgeSize() - 1, v1.edgeSize());
+        assertEquals(java.util.Arrays.asList(1), toList(v1.neighbors(2)));
+        assertEquals(java.util.Arrays.asList(4), toList(v1.neighbors(3)));
+        assertEquals(java.util.Arrays.asList(1, 3), toList(v0.neighbors(2)));
+        int max = u.maxVertex();
+        assertEquals(toList(v0.neighbors(max)), toList(v1.neighbors(max)));
+        SimpleShortestPaths paths = new SimpleShortestPaths(v1, 1) {
+                @Override
+                protected double getWeight(int a, int b) {
+                    return 1;
+                }
+            };
+        paths.setPaths();
+        assertEquals(1, paths.getWeight(2), 0);
+        assertEquals(Double.POSITIVE_INFINITY, paths.getWeight(3), 0);
+    }
+
+    @Test
+    public void testWeightOverlay() throws InterruptedException {
+        DirectedGraph d = makeDirected();
+        WeightOverlay overlay = new WeightOverlay(d, 1.0);
+        WeightOverlay.Generation g0 = overlay.current();
+        overlay.set(1, 3, 2.5);
+        overlay.set(3, 1, 4.0);
+        assertSame(g0, overlay.current());
+        WeightOverlay.Generation g1 = overlay.publish();
+        assertSame(g1, overlay.current());
+        assertTrue(g1.number() > g0.number());
+        assertEquals(1.0, g0.get(1, 3), 0);
+        assertEquals(2.5, g1.get(1, 3), 0);
+        assertEquals(4.0, g1.get(3, 1), 0);
+        assertEquals(2.5, g1.get(d.edgeId(1, 3)), 0);
+        assertEquals(1.0, g1.get(1, 2), 0);
+        assertEquals(0, g0.changedCount());
+        assertEquals(2, g1.changedCount());
+        overlay.set(1, 3, 1.0);
+        assertEquals(1, overlay.publish().changedCount());
+        assertEquals(2.5, g1.get(1, 3), 0);
+        for (int[] bad : new int[][] { { 2, 4 }, { 1, 9 } }) {
+            try {
+                overlay.set(bad[0], bad[1], 2.0);
+                fail("set a missing edge");
+            } catch (IllegalArgumentException excp) {
+                assertEquals(1, overlay.current().changedCount());
+            }
+        }
+        try {
+            overlay.set(1, 2, -1);
+            fail("set a negative weight");
+        } catch (IllegalArgumentException excp) {
+            assertEquals(1.0, overlay.current().get(1, 2), 0);
+        }
+
+        UndirectedGraph u = new UndirectedGraph();
+        int n = 3 * WeightOverlay.CHUNK_SIZE;
+        for (int v = 1; v <= n; v += 1) {
+            u.add();
+            if (v > 1) {
+                u.add(v - 1, v);
+            }
+        }
+        WeightOverlay big = new WeightOverlay(u, 0.0);
+        Thread[] setters = new Thread[4];
+        for (int t = 0; t < setters.length; t += 1) {
+            final int first = t + 2;
+            setters[t] = new Thread(() -> {
+                for (int v = first; v <= n; v += setters.length) {
+                    big.set(v, v - 1, v);
+                }
+            });
+            setters[t].start();
+        }
+        for (Thread t : setters) {
+            t.join();
+        }
+        WeightOverlay.Generation all = big.publish();
+        assertEquals(n - 1, all.changedCount());
+        for (int v = 2; v <= n; v += 1) {
+            assertEquals(v, all.get(v - 1, v), 0);
+        }
+    }
+
+    @Test
+    public void testFreezeDirected() {
+        DirectedGraph g = makeDirected();
+        g.remove(2);
+        Graph f = g.freeze();
+        assertTrue(f.isDirected());
+        assertEquals(3, f.vertexSize());
+        assertEquals(4, f.maxVertex());
+        assertEquals(3, f.edgeSize());
+        assertFalse(f.contains(2));
+        assertTrue(f.contains(1, 3));
+        assertTrue(f.contains(3, 1));
+        assertFalse(f.contains(1, 2));
+        assertEquals(1, f.outDegree(1));
+        assertEquals(1, f.inDegree(1));
+        assertEquals(1, f.inDegree(4));
+        assertEquals(1, f.edgeId(1, 3));
+        assertEquals(5, f.edgeId(3, 1));
+        assertEquals(4, f.edgeId(4, 4));
+        assertEquals(0, f.edgeId(3, 2));
+        int count = 0;
+        for (int v : f.vertices()) {
+            count += 1;
+        }
+        assertEquals(3, count);
+        count = 0;
+        for (int[] e : f.edges()) {
+            assertTrue(g.contains(e[0], e[1]));
+            count += 1;
+        }
+        assertEquals(3, count);
+        for (int p : f.predecessors(3)) {
+            assertEquals(1, p);
+        }
+        g.add(4, 1);
+        assertFalse(f.contains(4, 1));
+        try {
+            f.add();
+            fail("frozen graph was modified");
+        } catch (UnsupportedOperationException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testFreezeUndirected() {
+        Graph f = makeUndirected().freeze();
+        assertFalse(f.isDirected());
+        assertEquals(4, f.edgeSize());
+        assertTrue(f.contains(3, 1));
+        assertTrue(f.contains(2, 1));
+        assertEquals(2, f.outDegree(1));
+        assertEquals(2, f.inDegree(3));
+        assertEquals(1, f.outDegree(4));
+        assertEquals(1, f.edgeId(3, 1));
+        assertEquals(1, f.edgeId(1, 3));
+        int count = 0;
+        for (int[] e : f.edges()) {
+            count += 1;
+        }
+        assertEquals(4, count);
+        LabeledGraph<String, String> labeled = new LabeledGraph<>(f);
+        labeled.setLabel(3, 1, "road");
+        assertEquals("road", labeled.getLabel(1, 3));
+    }
+
+    @Test
+    public void testFrozenFromArrays() {
+        Graph f = DirectedGraph.frozen(new int[] { 0, 0, 2, 2, 3 },
+                                       new int[] { 3, 2, 1 });
+        assertTrue(f.isDirected());
+        assertEquals(3, f.vertexSize());
+        assertEquals(3, f.edgeSize());
+        assertEquals(2, f.outDegree(1));
+        assertEquals(0, f.outDegree(2));
+        assertEquals(2, f.inDegree(1) + f.inDegree(2));
+        assertEquals(1, f.edgeId(1, 3));
+        assertEquals(2, f.edgeId(1, 2));
+        assertEquals(3, f.edgeId(3, 1));
+        for (int p : f.predecessors(3)) {
+            assertEquals(1, p);
+        }
+        try {
+            DirectedGraph.frozen(new int[] { 0, 0, 2 }, new int[] { 1, 1 });
+            fail("duplicate edge accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        try {
+            DirectedGraph.frozen(new int[] { 0, 0, 1 }, new int[] { 2 });
+            fail("edge to missing vertex accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
     @Test
     public void emptyGraph() {
         DirectedGraph g = new DirectedGraph();
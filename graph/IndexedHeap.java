@@ -0,0 +1,235 @@
+package graph;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntToDoubleFunction;
+
+/* See restrictions in Graph.java. */
+
+/** A priority queue of vertices, ordered by priority and then by vertex
+ *  number, represented as a 4-ary heap.  Each vertex is in the queue at
+ *  most once.  Priorities are computed by a client-supplied function when
+ *  a vertex is added and are cached, so comparisons cost no calls.  Adding
+ *  a vertex that is already queued recomputes its priority and moves it
+ *  accordingly, which provides an O(log n) decrease-key.  An index from
+ *  vertex to heap slot makes contains and remove O(1) and O(log n).
+ *  @author Michael Chang
+ */
+class IndexedHeap extends AbstractQueue<Integer> {
+
+    /** An empty queue of vertices up to at least MAXVERTEX (more are
+     *  accommodated as needed), whose priorities are given by
+     *  PRIORITY. */
+    IndexedHeap(int maxVertex, IntToDoubleFunction priority) {
+        _priority = priority;
+        _slot = new int[maxVertex + 1];
+        _heap = new int[INITIAL_CAPACITY];
+        _keys = new double[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @Override
+    public boolean contains(Object v) {
+        return v instanceof Integer && queued((Integer) v);
+    }
+
+    /** Add V with its current priority if it is not queued.  Otherwise,
+     *  recompute its priority and restore heap order.  Returns true. */
+    @Override
+    public boolean offer(Integer v) {
+        update(v, _priority.applyAsDouble(v));
+        return true;
+    }
+
+    @Override
+    public Integer peek() {
+        return _size == 0 ? null : _heap[0];
+    }
+
+    @Override
+    public Integer poll() {
+        return _size == 0 ? null : removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object v) {
+        if (!contains(v)) {
+            return false;
+        }
+        int k = _slot[(Integer) v] - 1;
+        _slot[_heap[k]] = 0;
+        _size -= 1;
+        if (k < _size) {
+            int w = _heap[_size];
+            place(w, _keys[_size], k);
+            siftUp(k);
+            siftDown(_slot[w] - 1);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int k = 0; k < _size; k += 1) {
+            _slot[_heap[k]] = 0;
+        }
+        _size = 0;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return _k < _size;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _k += 1;
+                return _heap[_k - 1];
+            }
+
+            /** Index of my next heap slot. */
+            private int _k;
+        };
+    }
+
+    /** Use PRIORITY to compute the priorities of vertices added from now
+     *  on. */
+    void setPriority(IntToDoubleFunction priority) {
+        _priority = priority;
+    }
+
+    /** Returns true iff V is queued. */
+    boolean queued(int v) {
+        return 0 < v && v < _slot.length && _slot[v] != 0;
+    }
+
+    /** Returns the cached priority of queued vertex V. */
+    double key(int v) {
+        return _keys[_slot[v] - 1];
+    }
+
+    /** Queue V with priority KEY, or if it is already queued, change its
+     *  priority to KEY. */
+    void update(int v, double key) {
+        if (v >= _slot.length) {
+            _slot = Arrays.copyOf(_slot, Math.max(v + 1, 2 * _slot.length));
+        }
+        int k = _slot[v] - 1;
+        if (k < 0) {
+            if (_size == _heap.length) {
+                _heap = Arrays.copyOf(_heap, 2 * _size);
+                _keys = Arrays.copyOf(_keys, 2 * _size);
+            }
+            place(v, key, _size);
+            _size += 1;
+            siftUp(_size - 1);
+        } else if (before(key, v, _keys[k], v)) {
+            _keys[k] = key;
+            siftUp(k);
+        } else {
+            _keys[k] = key;
+            siftDown(k);
+        }
+    }
+
+    /** Remove and return the first vertex.  Assumes I am not empty. */
+    int removeFirst() {
+        int v = _heap[0];
+        _slot[v] = 0;
+        _size -= 1;
+        if (_size > 0) {
+            place(_heap[_size], _keys[_size], 0);
+            siftDown(0);
+        }
+        return v;
+    }
+
+    /** Move the item in slot K up toward the root until heap order
+     *  holds. */
+    private void siftUp(int k) {
+        int v = _heap[k];
+        double key = _keys[k];
+        while (k > 0) {
+            int parent = (k - 1) / ARITY;
+            if (!before(key, v, _keys[parent], _heap[parent])) {
+                break;
+            }
+            place(_heap[parent], _keys[parent], k);
+            k = parent;
+        }
+        place(v, key, k);
+    }
+
+    /** Move the item in slot K down toward the leaves until heap order
+     *  holds. */
+    private void siftDown(int k) {
+        int v = _heap[k];
+        double key = _keys[k];
+        while (true) {
+            int first = ARITY * k + 1;
+            if (first >= _size) {
+                break;
+            }
+            int best = first;
+            int last = Math.min(first + ARITY, _size);
+            for (int c = first + 1; c < last; c += 1) {
+                if (before(_keys[c], _heap[c], _keys[best], _heap[best])) {
+                    best = c;
+                }
+            }
+            if (!before(_keys[best], _heap[best], key, v)) {
+                break;
+            }
+            place(_heap[best], _keys[best], k);
+            k = best;
+        }
+        place(v, key, k);
+    }
+
+    /** Put vertex V with priority KEY into heap slot K. */
+    private void place(int v, double key, int k) {
+        _heap[k] = v;
+        _keys[k] = key;
+        _slot[v] = k + 1;
+    }
+
+    /** Returns true iff (KEY0, V0) precedes (KEY1, V1): that is, the
+     *  priority KEY0 is smaller, or the priorities are equal and vertex V0
+     *  is smaller. */
+    private static boolean before(double key0, int v0, double key1, int v1) {
+        return key0 < key1 || (key0 == key1 && v0 < v1);
+    }
+
+    /** Number of children of each heap node. */
+    private static final int ARITY = 4;
+    /** Initial size of the heap arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Computes the priority of a vertex being added. */
+    private IntToDoubleFunction _priority;
+    /** _slot[V] is one more than V's heap slot, or 0 if V is not queued. */
+    private int[] _slot;
+    /** The queued vertices, in heap order. */
+    private int[] _heap;
+    /** Cached priorities, parallel to _heap. */
+    private double[] _keys;
+    /** Number of queued vertices. */
+    private int _size;
+}
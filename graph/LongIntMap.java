@@ -0,0 +1,95 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** A map from nonzero long keys to nonzero int values, stored in parallel
+ *  primitive arrays using open addressing with linear probing.  The key 0
+ *  marks an empty slot, and get returns 0 for absent keys, so neither may
+ *  be stored.
+ *  @author Michael Chang
+ */
+class LongIntMap {
+
+    /** An empty map. */
+    LongIntMap() {
+        _keys = new long[MIN_CAPACITY];
+        _values = new int[MIN_CAPACITY];
+    }
+
+    /** Returns the number of keys in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the value stored under KEY, or 0 if there is none. */
+    int get(long key) {
+        int mask = _keys.length - 1;
+        for (int i = slot(key, mask); _keys[i] != 0; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return _values[i];
+            }
+        }
+        return 0;
+    }
+
+    /** Set the value stored under KEY to VALUE.  Assumes that neither is
+     *  0. */
+    void put(long key, int value) {
+        assert key != 0 && value != 0;
+        if (2 * (_size + 1) > _keys.length) {
+            resize(2 * _keys.length);
+        }
+        int mask = _keys.length - 1;
+        int i;
+        for (i = slot(key, mask); _keys[i] != 0; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                _values[i] = value;
+                return;
+            }
+        }
+        _keys[i] = key;
+        _values[i] = value;
+        _size += 1;
+    }
+
+    /** Returns the key formed from the pair of positive ints (U, V). */
+    static long pack(int u, int v) {
+        return ((long) u << 32) | (v & 0xffffffffL);
+    }
+
+    /** Returns the home slot for KEY in a table whose size is MASK + 1. */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Rehash all my entries into tables of size CAPACITY, a power of 2. */
+    private void resize(int capacity) {
+        long[] oldKeys = _keys;
+        int[] oldValues = _values;
+        _keys = new long[capacity];
+        _values = new int[capacity];
+        int mask = capacity - 1;
+        for (int k = 0; k < oldKeys.length; k += 1) {
+            if (oldKeys[k] != 0) {
+                int i;
+                for (i = slot(oldKeys[k], mask); _keys[i] != 0;
+                     i = (i + 1) & mask) {
+                    continue;
+                }
+                _keys[i] = oldKeys[k];
+                _values[i] = oldValues[k];
+            }
+        }
+    }
+
+    /** Initial table size. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** Keys, with 0 marking empty slots. */
+    private long[] _keys;
+    /** Values, parallel to _keys. */
+    private int[] _values;
+    /** Number of keys in use. */
+    private int _size;
+}
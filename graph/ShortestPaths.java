@@ -2,16 +2,23 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 /** The shortest paths through an edge-weighted graph.
  *  By overriding methods getWeight, setWeight, getPredecessor, and
  *  setPredecessor, the client can determine how to represent the weighting
  *  and the search results.  By overriding estimatedDistance, clients
- *  can search for paths to specific destinations using A* search.
+ *  can search for paths to specific destinations using A* search.  When
+ *  there is a destination, setBidirectional selects a bidirectional A*
+ *  search instead, which also uses estimatedDistanceFromSource.  Given a
+ *  set of targets instead of a destination, the search stops once it
+ *  has settled all of them, or the nearest K of them, which
+ *  getSettledTargets reports.  getSettledCount reports how many vertices
+ *  a search settled, for measuring its cost.
  *  @author Michael Chang
  */
 public abstract class ShortestPaths {
@@ -26,31 +33,118 @@ public abstract class ShortestPaths {
         _G = G;
         _source = source;
         _dest = dest;
-        comp = new Comparator<>() {
-            @Override
-            public int compare(Integer o1, Integer o2) {
-                if (getWeight(o1) + estimatedDistance(o1)
-                        < getWeight(o2) + estimatedDistance(o2)) {
-                    return -1;
-                } else if (getWeight(o1) + estimatedDistance(o1)
-                        > getWeight(o2) + estimatedDistance(o2)) {
-                    return 1;
-                } else {
-                    return Integer.compare(o1, o2);
-                }
-            }
-        };
+        _targets = null;
+        _wanted = -1;
+        _found = null;
+    }
+
+    /** Shortest paths in G from SOURCE to each vertex in TARGETS. */
+    public ShortestPaths(Graph G, int source, int[] targets) {
+        this(G, source, targets, targets.length);
+    }
+
+    /** Shortest paths in G from SOURCE to the K vertices in TARGETS
+     *  nearest to SOURCE (or to all of them, if there are fewer than K
+     *  distinct targets).  The search stops as soon as it has settled
+     *  that many targets, rather than settling the whole graph.
+     *  Afterwards, getWeight, getPredecessor, and pathTo are valid for the
+     *  targets listed by getSettledTargets, and for the vertices on their
+     *  shortest paths.  Here, estimatedDistance, if overridden, must not
+     *  exceed the weight of a shortest path from V to any target. */
+    public ShortestPaths(Graph G, int source, int[] targets, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("negative target count");
+        }
+        _G = G;
+        _source = source;
+        _dest = 0;
+        _targets = distinct(targets);
+        _wanted = Math.min(k, _targets.length);
+        _found = new int[_wanted];
     }
 
     /** Initialize the shortest paths.  Must be called before using
      *  getWeight, getPredecessor, and pathTo. */
     public void setPaths() {
+        _settled = 0;
+        _numFound = 0;
+        resetWeights();
+        setWeight(_source, 0);
+        if (_bidirectional && _dest != 0) {
+            newBidirectionalSearch().search();
+        } else {
+            AStarSearch search = newSearch();
+            search.traverse(_source);
+        }
+    }
+
+    /** If ON, make setPaths search from both the source and the destination
+     *  at once (when there is a destination), which generally examines far
+     *  fewer vertices than searching from the source alone.  Afterwards,
+     *  getWeight, getPredecessor, and pathTo are valid for the vertices on
+     *  the path to the destination, but not necessarily for others.
+     *  Bidirectional search requires estimatedDistance and
+     *  estimatedDistanceFromSource to be consistent: for every edge (U, V),
+     *  neither estimate may change by more than getWeight(U, V) between
+     *  U and V. */
+    public void setBidirectional(boolean on) {
+        _bidirectional = on;
+    }
+
+    /** Returns the targets settled by the last call to setPaths, in the
+     *  order they were settled (so that the nearest is first), or null if
+     *  I was not given targets.  Any targets not listed were not reached,
+     *  or were not needed because enough nearer ones were. */
+    public List<Integer> getSettledTargets() {
+        if (_targets == null) {
+            return null;
+        }
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int k = 0; k < _numFound; k += 1) {
+            result.add(_found[k]);
+        }
+        return result;
+    }
+
+    /** Returns the distinct values in VERTICES, in increasing order. */
+    private static int[] distinct(int[] vertices) {
+        int[] sorted = vertices.clone();
+        Arrays.sort(sorted);
+        int n;
+        n = 0;
+        for (int v : sorted) {
+            if (n == 0 || sorted[n - 1] != v) {
+                sorted[n] = v;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    /** Set the weight of every vertex to infinity in preparation for a
+     *  search. */
+    void resetWeights() {
         for (int i = 1; i <= _G.maxVertex(); i += 1) {
             setWeight(i, Double.POSITIVE_INFINITY);
         }
-        setWeight(_source, 0);
-        AStarSearch search = new AStarSearch(_G);
-        search.traverse(_source);
+    }
+
+    /** Returns a new AStarSearch of _G, ready to traverse. */
+    AStarSearch newSearch() {
+        return new AStarSearch(_G);
+    }
+
+    /** Returns a new BidirectionalSearch of _G, ready to search. */
+    BidirectionalSearch newBidirectionalSearch() {
+        return new BidirectionalSearch(new IndexedHeap(_G.maxVertex(), null),
+                                       new SimpleShortestPaths.Workspace());
+    }
+
+    /** Returns the number of vertices whose successors (or, in the
+     *  backward half of a bidirectional search, predecessors) the last
+     *  call to setPaths examined: a measure of the work it did. */
+    public int getSettledCount() {
+        return _settled;
     }
 
     /** Returns the starting vertex. */
@@ -84,6 +178,14 @@ public abstract class ShortestPaths {
         return 0.0;
     }
 
+    /** Returns an estimated heuristic weight of the shortest path from the
+     *  source vertex to vertex V, used by bidirectional search as
+     *  estimatedDistance is by forward search.  This is assumed to be less
+     *  than the actual weight, and is 0 by default. */
+    protected double estimatedDistanceFromSource(int v) {
+        return 0.0;
+    }
+
     /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
      *  not in the graph, returns positive infinity. */
     protected abstract double getWeight(int u, int v);
@@ -119,16 +221,42 @@ public abstract class ShortestPaths {
     private final int _source;
     /** The target vertex. */
     private final int _dest;
-    /** Comparator for A* Search. */
-    private Comparator<Integer> comp;
+    /** True iff setPaths is to use bidirectional search. */
+    private boolean _bidirectional;
+    /** Number of vertices settled by the last search. */
+    private int _settled;
+    /** Distinct target vertices, in increasing order, or null if there
+     *  are none. */
+    private final int[] _targets;
+    /** Number of targets after whose settling setPaths stops, or -1 if
+     *  there are no targets. */
+    private final int _wanted;
+    /** The targets settled by the last search are _found[0 .. _numFound
+     *  - 1], in order of settling. */
+    private final int[] _found;
+    /** Number of valid entries in _found. */
+    private int _numFound;
 
-    /** An implementation of A* search using the Traversal class. */
+    /** An implementation of A* search using the Traversal class.  The
+     *  fringe is an IndexedHeap ordered by getWeight(v) +
+     *  estimatedDistance(v), then by vertex number. */
     class AStarSearch extends Traversal {
 
         /** Constructor for Traversal using A*.
          * @param G graph that is searched. */
         AStarSearch(Graph G) {
-            super(G, new TreeSetQ(comp));
+            this(G, new IndexedHeap(G.maxVertex(), null),
+                 new VertexMarks.Bits(G.maxVertex()),
+                 new VertexMarks.Bits(G.maxVertex()));
+        }
+
+        /** An A* search of G, using FRINGE, which must be empty, and the
+         *  cleared marks MARKED and POSTVISITED. */
+        AStarSearch(Graph G, IndexedHeap fringe, VertexMarks marked,
+                    VertexMarks postVisited) {
+            super(G, fringe, marked, postVisited);
+            _heap = fringe;
+            fringe.setPriority(this::priority);
         }
 
         @Override
@@ -136,19 +264,185 @@ public abstract class ShortestPaths {
             if (v == _dest) {
                 return false;
             }
-            for (int succ : _G.successors(v)) {
-                double weight1 = getWeight(v) + getWeight(v, succ);
-                double weight2 = getWeight(succ);
-                if (weight1 < weight2) {
-                    setWeight(succ, weight1);
-                    if (_fringe.contains(((Object) succ))) {
-                        _fringe.remove(succ);
-                        _fringe.add(succ);
-                    }
-                    setPredecessor(succ, v);
+            if (_wanted >= 0) {
+                if (_numFound < _wanted
+                    && Arrays.binarySearch(_targets, v) >= 0) {
+                    _found[_numFound] = v;
+                    _numFound += 1;
+                }
+                if (_numFound == _wanted) {
+                    return false;
                 }
             }
+            _settled += 1;
             return true;
         }
+
+        /** Relax the edges leaving V, queueing its unmarked successors.
+         *  This does the work of the default processSuccessors directly on
+         *  the heap, so that it allocates nothing per edge. */
+        @Override
+        protected void processSuccessors(int v) {
+            _from = v;
+            _fromWeight = getWeight(v);
+            _G.eachSuccessor(v, _relax);
+        }
+
+        /** Relax the edge from _from to SUCC.  Successors whose weights
+         *  decrease are repositioned in the fringe, since updating a
+         *  queued vertex in an IndexedHeap changes its priority. */
+        private void relax(int succ) {
+            double weight = _fromWeight + getWeight(_from, succ);
+            if (weight < getWeight(succ)) {
+                setWeight(succ, weight);
+                setPredecessor(succ, _from);
+                if (!marked(succ)) {
+                    _heap.update(succ, priority(succ));
+                }
+            } else if (!marked(succ) && !_heap.queued(succ)) {
+                _heap.update(succ, priority(succ));
+            }
+        }
+
+        /** Returns the priority of V in the fringe. */
+        private double priority(int v) {
+            return getWeight(v) + estimatedDistance(v);
+        }
+
+        /** The fringe. */
+        private final IndexedHeap _heap;
+        /** The vertex whose edges are being relaxed. */
+        private int _from;
+        /** The weight of _from. */
+        private double _fromWeight;
+        /** Applies relax to each successor of _from. */
+        private final IntConsumer _relax = this::relax;
+    }
+
+    /** A bidirectional A* search from _source to _dest.  A forward search
+     *  over successors, which records its results with setWeight and
+     *  setPredecessor, alternates with a backward search over
+     *  predecessors, which records distances to _dest and next vertices
+     *  toward it in a separate Workspace.  Both use the average potential
+     *  P(V) = (estimatedDistance(V) - estimatedDistanceFromSource(V)) / 2:
+     *  forward priorities are weight + P(V), and backward ones are
+     *  weight - P(V).  These are consistent when both estimates are, and
+     *  describe the same reduced edge weights in both directions, so the
+     *  search may stop as soon as the smallest forward and backward
+     *  priorities sum to at least the weight of the best path found so
+     *  far.  That path is then copied into the forward results. */
+    class BidirectionalSearch {
+
+        /** A search using the empty queue FORWARD as the forward fringe,
+         *  and BACKWARD to hold the state of the backward search. */
+        BidirectionalSearch(IndexedHeap forward,
+                            SimpleShortestPaths.Workspace backward) {
+            _forward = forward;
+            _backward = backward;
+            _backward.reset(_G.maxVertex());
+            _backward.fringe().clear();
+        }
+
+        /** Perform the search, assuming that all weights but that of
+         *  _source are infinite. */
+        void search() {
+            IndexedHeap back = _backward.fringe();
+            _backward.setWeight(_dest, 0);
+            _forward.update(_source, potential(_source));
+            back.update(_dest, -potential(_dest));
+            if (_source == _dest) {
+                _best = 0;
+                _meet = _source;
+            }
+            while (!_forward.isEmpty() && !back.isEmpty()) {
+                if (_forward.key(_forward.peek()) + back.key(back.peek())
+                    >= _best) {
+                    break;
+                }
+                if (_forward.size() <= back.size()) {
+                    expandForward(_forward.removeFirst());
+                } else {
+                    expandBackward(back.removeFirst());
+                }
+            }
+            if (_meet != 0) {
+                for (int v = _meet; v != _dest; ) {
+                    int next = _backward.predecessor(v);
+                    setWeight(next, getWeight(v) + getWeight(v, next));
+                    setPredecessor(next, v);
+                    v = next;
+                }
+            }
+        }
+
+        /** Relax the edges leaving V in the forward search. */
+        private void expandForward(int v) {
+            _settled += 1;
+            _from = v;
+            _fromWeight = getWeight(v);
+            _G.eachSuccessor(v, _relaxForward);
+        }
+
+        /** Relax the edge from _from to SUCC in the forward search. */
+        private void relaxForward(int succ) {
+            double w = _fromWeight + getWeight(_from, succ);
+            if (w < getWeight(succ)) {
+                setWeight(succ, w);
+                setPredecessor(succ, _from);
+                _forward.update(succ, w + potential(succ));
+                meet(succ, w + _backward.weight(succ));
+            }
+        }
+
+        /** Relax the edges entering V in the backward search. */
+        private void expandBackward(int v) {
+            _settled += 1;
+            _from = v;
+            _fromWeight = _backward.weight(v);
+            _G.eachPredecessor(v, _relaxBackward);
+        }
+
+        /** Relax the edge from PRED to _from in the backward search. */
+        private void relaxBackward(int pred) {
+            double w = _fromWeight + getWeight(pred, _from);
+            if (w < _backward.weight(pred)) {
+                _backward.setWeight(pred, w);
+                _backward.setPredecessor(pred, _from);
+                _backward.fringe().update(pred, w - potential(pred));
+                meet(pred, getWeight(pred) + w);
+            }
+        }
+
+        /** Record that there is a path of weight W from _source to _dest
+         *  through V, if it is the best so far. */
+        private void meet(int v, double w) {
+            if (w < _best) {
+                _best = w;
+                _meet = v;
+            }
+        }
+
+        /** Returns the average potential of V. */
+        private double potential(int v) {
+            return (estimatedDistance(v) - estimatedDistanceFromSource(v)) / 2;
+        }
+
+        /** The fringe of the forward search. */
+        private final IndexedHeap _forward;
+        /** Distances to _dest, next vertices toward _dest (as
+         *  predecessors), and fringe of the backward search. */
+        private final SimpleShortestPaths.Workspace _backward;
+        /** Weight of the best path found so far. */
+        private double _best = Double.POSITIVE_INFINITY;
+        /** A vertex on the best path found so far, or 0 if none. */
+        private int _meet;
+        /** The vertex being expanded. */
+        private int _from;
+        /** The weight of _from in the search expanding it. */
+        private double _fromWeight;
+        /** Apply relaxForward and relaxBackward to each neighbor of
+         *  _from. */
+        private final IntConsumer _relaxForward = this::relaxForward,
+            _relaxBackward = this::relaxBackward;
     }
 }
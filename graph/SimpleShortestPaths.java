@@ -1,10 +1,14 @@
 package graph;
-import java.util.ArrayList;
+
+import java.util.Arrays;
+
 /* See restrictions in Graph.java. */
 
 /** A partial implementation of ShortestPaths that contains the weights of
  *  the vertices and the predecessor edges.   The client needs to
- *  supply only the two-argument getWeight method.
+ *  supply only the two-argument getWeight method.  A client that runs
+ *  many searches on one thread may pass each the same Workspace, whose
+ *  arrays are then reused rather than allocated anew.
  *  @author Michael Chang
  */
 public abstract class SimpleShortestPaths extends ShortestPaths {
@@ -16,13 +20,40 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     /** A shortest path in G from SOURCE to DEST. */
     public SimpleShortestPaths(Graph G, int source, int dest) {
+        this(G, source, dest, new Workspace());
+    }
+
+    /** A shortest path in G from SOURCE to DEST that keeps its search
+     *  state in WORKSPACE.  The workspace may be shared by any number of
+     *  SimpleShortestPaths objects, as long as they are searched one at a
+     *  time: calling setPaths on one of them invalidates the results of
+     *  the last one to use WORKSPACE before it. */
+    public SimpleShortestPaths(Graph G, int source, int dest,
+                               Workspace workspace) {
         super(G, source, dest);
-        _weightList = new ArrayList<>();
-        _predecessorList = new ArrayList<>();
-        for (int i = 0; i <= G.maxVertex(); i += 1) {
-            _weightList.add(null);
-            _predecessorList.add(null);
-        }
+        _work = workspace;
+        _work.reserve(G.maxVertex());
+    }
+
+    /** Shortest paths in G from SOURCE to each vertex in TARGETS. */
+    public SimpleShortestPaths(Graph G, int source, int[] targets) {
+        this(G, source, targets, targets.length);
+    }
+
+    /** Shortest paths in G from SOURCE to the K vertices in TARGETS nearest
+     *  to SOURCE, as for ShortestPaths(G, SOURCE, TARGETS, K). */
+    public SimpleShortestPaths(Graph G, int source, int[] targets, int k) {
+        this(G, source, targets, k, new Workspace());
+    }
+
+    /** Shortest paths in G from SOURCE to the K vertices in TARGETS nearest
+     *  to SOURCE that keep their search state in WORKSPACE, which may be
+     *  shared as for SimpleShortestPaths(G, SOURCE, DEST, WORKSPACE). */
+    public SimpleShortestPaths(Graph G, int source, int[] targets, int k,
+                               Workspace workspace) {
+        super(G, source, targets, k);
+        _work = workspace;
+        _work.reserve(G.maxVertex());
     }
 
     /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
@@ -32,8 +63,8 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     @Override
     public double getWeight(int v) {
-        if (_G.contains(v) && _weightList.get(v) != null) {
-            return _weightList.get(v);
+        if (0 < v && v < _work._weights.length) {
+            return _work._weights[v];
         } else {
             return Double.POSITIVE_INFINITY;
         }
@@ -42,13 +73,14 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
     @Override
     protected void setWeight(int v, double w) {
         assert _G.contains(v);
-        _weightList.set(v, w);
+        _work.touch(v);
+        _work._weights[v] = w;
     }
 
     @Override
     public int getPredecessor(int v) {
-        if (_G.contains(v) && _predecessorList.get(v) != null) {
-            return _predecessorList.get(v);
+        if (0 < v && v < _work._predecessors.length) {
+            return _work._predecessors[v];
         } else {
             return 0;
         }
@@ -56,14 +88,143 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     @Override
     protected void setPredecessor(int v, int u) {
-        _predecessorList.set(v, u);
+        _work.touch(v);
+        _work._predecessors[v] = u;
+    }
+
+    /** Resets only the vertices given weights or predecessors since the
+     *  last reset of my workspace, which all others already have. */
+    @Override
+    void resetWeights() {
+        _work.reset(_G.maxVertex());
+    }
+
+    @Override
+    AStarSearch newSearch() {
+        _work._fringe.clear();
+        _work._marked.clear();
+        _work._postVisited.clear();
+        return new AStarSearch(_G, _work._fringe, _work._marked,
+                               _work._postVisited);
+    }
+
+    @Override
+    BidirectionalSearch newBidirectionalSearch() {
+        _work._fringe.clear();
+        return new BidirectionalSearch(_work._fringe, _work.reverse());
+    }
+
+    /** The state of a shortest-path search: vertex weights and predecessors
+     *  in primitive arrays, plus the fringe and marks of the search itself.
+     *  A Workspace is reused from one search to the next, so that repeated
+     *  searches of a large graph need not reallocate and reinitialize
+     *  state for every vertex.  Instead, each search resets only the
+     *  vertices that the previous one touched.  A Workspace may be used
+     *  by only one search at a time. */
+    public static class Workspace {
+
+        /** An empty workspace. */
+        public Workspace() {
+            _weights = new double[0];
+            _predecessors = new int[0];
+            _touched = new int[INITIAL_TOUCHED];
+            _fringe = new IndexedHeap(0, null);
+            _marked = new VertexMarks.Stamps(0);
+            _postVisited = new VertexMarks.Stamps(0);
+        }
+
+        /** Make room for vertices up to MAXVERTEX. */
+        void reserve(int maxVertex) {
+            int n = _weights.length;
+            if (maxVertex >= n) {
+                _weights = Arrays.copyOf(_weights, maxVertex + 1);
+                _predecessors = Arrays.copyOf(_predecessors, maxVertex + 1);
+                Arrays.fill(_weights, n, maxVertex + 1,
+                            Double.POSITIVE_INFINITY);
+            }
+        }
+
+        /** Record that V's weight or predecessor is about to be set, so
+         *  that the next reset will clear it. */
+        void touch(int v) {
+            if (_predecessors[v] == 0
+                && _weights[v] == Double.POSITIVE_INFINITY) {
+                if (_numTouched == _touched.length) {
+                    _touched = Arrays.copyOf(_touched, 2 * _numTouched);
+                }
+                _touched[_numTouched] = v;
+                _numTouched += 1;
+            }
+        }
+
+        /** Returns V's weight, or infinity if it has none. */
+        double weight(int v) {
+            return v < _weights.length ? _weights[v] : Double.POSITIVE_INFINITY;
+        }
+
+        /** Set V's weight to W, where V has been reserved. */
+        void setWeight(int v, double w) {
+            touch(v);
+            _weights[v] = w;
+        }
+
+        /** Returns V's predecessor, or 0 if it has none. */
+        int predecessor(int v) {
+            return v < _predecessors.length ? _predecessors[v] : 0;
+        }
+
+        /** Set V's predecessor to U, where V has been reserved. */
+        void setPredecessor(int v, int u) {
+            touch(v);
+            _predecessors[v] = u;
+        }
+
+        /** Returns my fringe. */
+        IndexedHeap fringe() {
+            return _fringe;
+        }
+
+        /** Returns a second workspace, belonging to me, for the backward
+         *  half of bidirectional searches. */
+        Workspace reverse() {
+            if (_reverse == null) {
+                _reverse = new Workspace();
+            }
+            return _reverse;
+        }
+
+        /** Set the weights of all vertices to infinity and their
+         *  predecessors to 0, making room for vertices up to MAXVERTEX. */
+        void reset(int maxVertex) {
+            reserve(maxVertex);
+            for (int i = 0; i < _numTouched; i += 1) {
+                _weights[_touched[i]] = Double.POSITIVE_INFINITY;
+                _predecessors[_touched[i]] = 0;
+            }
+            _numTouched = 0;
+        }
+
+        /** Initial size of _touched. */
+        private static final int INITIAL_TOUCHED = 64;
+
+        /** Vertex weights, indexed by vertex. */
+        private double[] _weights;
+        /** Vertex predecessors (0 for none), indexed by vertex. */
+        private int[] _predecessors;
+        /** The vertices whose weight or predecessor has been set since
+         *  the last reset are _touched[0 .. _numTouched - 1]. */
+        private int[] _touched;
+        /** Number of valid entries in _touched. */
+        private int _numTouched;
+        /** The fringe used by each search. */
+        private final IndexedHeap _fringe;
+        /** Marks used by each search. */
+        private final VertexMarks _marked, _postVisited;
+        /** Workspace returned by reverse(), or null if not yet needed. */
+        private Workspace _reverse;
     }
 
-    /** List where index is vertex and value
-     *  is their corresponding weight. */
-    private ArrayList<Double> _weightList;
-    /** List where index is vertex and value
-     *  is their corresponding predecessor. */
-    private ArrayList<Integer> _predecessorList;
+    /** My search state. */
+    private final Workspace _work;
 
 }
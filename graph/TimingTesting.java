@@ -0,0 +1,640 @@
+package graph;
+
+import java.util.Queue;
+
+/** Timing benchmarks for the graph package.  These are not unit tests, and
+ *  are not run by UnitTest.  Run them by hand with
+ *      java -cp .. graph.TimingTesting [ MAXVERTICES ]
+ *  where MAXVERTICES (default 1000000) bounds the largest problem used by
+ *  the fringe comparison.  Each benchmark prints one line per problem
+ *  size, so that scaling can be read off directly: time per edge should
+ *  stay roughly constant as the size grows.
+ *  @author Michael Chang
+ */
+public class TimingTesting {
+
+    /** Run all benchmarks, with ARGS as described above. */
+    public static void main(String... args) {
+        int maxVertices =
+            args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        timeUndirectedBFS();
+        timeTraversal();
+        timeFringes(maxVertices);
+        timeBidirectional(500, 20);
+        timeContraction(100, 1000);
+        timeDistanceMatrix(300, 20, 50);
+        timeNearestTargets(300, 100, 5);
+        timeSuccessorLoops(500);
+        timeClosures(300, 2000);
+        timeVersions(500, 100, 200);
+        timeOverlay(500, 1000000, 100);
+    }
+
+    /** Time building square undirected grid graphs, with up to about a
+     *  million edges, and breadth-first search over their neighbors. */
+    static void timeUndirectedBFS() {
+        System.out.printf("undirected grid BFS%n%10s %10s %10s %10s %12s%n",
+                          "vertices", "edges", "build ms", "BFS ms",
+                          "nsec/edge");
+        for (int side = 181; side <= 724; side = side * 1414 / 1000) {
+            long start = System.nanoTime();
+            UndirectedGraph g = grid(side);
+            long built = System.nanoTime();
+            long best = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                long t0 = System.nanoTime();
+                int reached = bfs(g, 1);
+                best = Math.min(best, System.nanoTime() - t0);
+                assert reached == g.vertexSize();
+            }
+            System.out.printf("%10d %10d %10.1f %10.1f %12.1f%n",
+                              g.vertexSize(), g.edgeSize(),
+                              (built - start) / 1e6, best / 1e6,
+                              (double) best / g.edgeSize());
+        }
+    }
+
+    /** Time BreadthFirstTraversal over the same grids as
+     *  timeUndirectedBFS, reusing one traversal (and so its marks) across
+     *  trials. */
+    static void timeTraversal() {
+        System.out.printf("BreadthFirstTraversal%n%10s %10s %10s %12s%n",
+                          "vertices", "edges", "BFS ms", "nsec/edge");
+        for (int side = 181; side <= 724; side = side * 1414 / 1000) {
+            UndirectedGraph g = grid(side);
+            final int[] visited = new int[1];
+            BreadthFirstTraversal bfs = new BreadthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    visited[0] += 1;
+                    return true;
+                }
+            };
+            long best = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                visited[0] = 0;
+                bfs.clear();
+                long t0 = System.nanoTime();
+                bfs.traverse(1);
+                best = Math.min(best, System.nanoTime() - t0);
+                assert visited[0] == g.vertexSize();
+            }
+            System.out.printf("%10d %10d %10.1f %12.1f%n",
+                              g.vertexSize(), g.edgeSize(), best / 1e6,
+                              (double) best / g.edgeSize());
+        }
+    }
+
+    /** Compare IndexedHeap with TreeSetQ as the fringe of Dijkstra's
+     *  algorithm on road-like grids of 10^4 up to MAXVERTICES vertices.
+     *  The grids are generated on the fly (see roadWeight), so that only
+     *  the search itself is timed. */
+    static void timeFringes(int maxVertices) {
+        System.out.printf("Dijkstra fringe%n%10s %14s %14s %8s%n",
+                          "vertices", "TreeSetQ ms", "IndexedHeap ms",
+                          "ratio");
+        for (int n = 10000; n <= maxVertices; n *= 10) {
+            int side = (int) Math.round(Math.sqrt(n));
+            final double[] dist = new double[side * side + 1];
+            Queue<Integer> tree = new TreeSetQ((a, b) -> {
+                int c = Double.compare(dist[a], dist[b]);
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            Queue<Integer> heap = new IndexedHeap(side * side, v -> dist[v]);
+            double treeTime = dijkstra(side, dist, tree, true);
+            double treeDist = dist[side * side];
+            double heapTime = dijkstra(side, dist, heap, false);
+            assert treeDist == dist[side * side];
+            System.out.printf("%10d %14.1f %14.1f %8.2f%n", side * side,
+                              treeTime, heapTime, treeTime / heapTime);
+        }
+    }
+
+    /** Run Dijkstra's algorithm from the corner of a SIDE x SIDE road-like
+     *  grid, leaving distances in DIST and using FRINGE as the priority
+     *  queue.  If REINSERT, a queued vertex is removed from FRINGE before
+     *  its distance changes and added afterwards (as a TreeSet requires);
+     *  otherwise, it is simply added again.  Returns the elapsed time in
+     *  milliseconds. */
+    static double dijkstra(int side, double[] dist, Queue<Integer> fringe,
+                           boolean reinsert) {
+        java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        long start = System.nanoTime();
+        dist[1] = 0;
+        fringe.add(1);
+        int[] next = new int[4];
+        while (!fringe.isEmpty()) {
+            int v = fringe.remove();
+            int i = (v - 1) / side, j = (v - 1) % side;
+            next[0] = j > 0 ? v - 1 : 0;
+            next[1] = j + 1 < side ? v + 1 : 0;
+            next[2] = i > 0 ? v - side : 0;
+            next[3] = i + 1 < side ? v + side : 0;
+            for (int w : next) {
+                if (w != 0 && dist[v] + roadWeight(v, w) < dist[w]) {
+                    if (reinsert) {
+                        fringe.remove((Integer) w);
+                    }
+                    dist[w] = dist[v] + roadWeight(v, w);
+                    fringe.add(w);
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Time unidirectional and bidirectional A* searches between QUERIES
+     *  random pairs of vertices in a frozen SIDE x SIDE road-like grid,
+     *  estimating distances by grid distance. */
+    static void timeBidirectional(int side, int queries) {
+        Graph g = grid(side).freeze();
+        java.util.Random rand = new java.util.Random(side);
+        int[] ends = new int[2 * queries];
+        for (int k = 0; k < ends.length; k += 1) {
+            ends[k] = 1 + rand.nextInt(side * side);
+        }
+        System.out.printf("A* on %d vertices, %d queries%n%16s %10s%n",
+                          side * side, queries, "", "msec");
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        double[] total = new double[2];
+        for (int mode = 0; mode < 2; mode += 1) {
+            long start = System.nanoTime();
+            for (int k = 0; k < ends.length; k += 2) {
+                SimpleShortestPaths paths =
+                    gridPaths(g, side, ends[k], ends[k + 1], work);
+                paths.setBidirectional(mode == 1);
+                paths.setPaths();
+                total[mode] += paths.getWeight(ends[k + 1]);
+            }
+            System.out.printf("%16s %10.1f%n",
+                              mode == 0 ? "unidirectional" : "bidirectional",
+                              (System.nanoTime() - start) / 1e6);
+        }
+        assert Math.abs(total[0] - total[1]) < 1e-6 * total[0];
+    }
+
+    /** Time contracting a frozen SIDE x SIDE road-like grid into a
+     *  ContractionHierarchy, and then QUERIES random queries of it, compared
+     *  with bidirectional A* on the same queries. */
+    static void timeContraction(int side, int queries) {
+        Graph g = grid(side).freeze();
+        long start = System.nanoTime();
+        ContractionHierarchy ch = new ContractionHierarchy(g) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return roadWeight(u, v);
+            }
+        };
+        ch.contract();
+        System.out.printf("contraction hierarchy of %d vertices: %.1f msec,"
+                          + " %d shortcuts%n%16s %12s %12s%n",
+                          side * side, (System.nanoTime() - start) / 1e6,
+                          ch.shortcutCount(), "", "usec/query",
+                          "settled");
+        java.util.Random rand = new java.util.Random(queries);
+        int[] ends = new int[2 * queries];
+        for (int k = 0; k < ends.length; k += 1) {
+            ends[k] = 1 + rand.nextInt(side * side);
+        }
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        double[] total = new double[2];
+        for (int mode = 0; mode < 2; mode += 1) {
+            long settled;
+            settled = 0;
+            start = System.nanoTime();
+            for (int k = 0; k < ends.length; k += 2) {
+                if (mode == 0) {
+                    total[mode] += ch.path(ends[k], ends[k + 1]).size();
+                    total[mode] += ch.distance(ends[k], ends[k + 1]);
+                    settled += ch.getSettledCount();
+                } else {
+                    SimpleShortestPaths paths =
+                        gridPaths(g, side, ends[k], ends[k + 1], work);
+                    paths.setBidirectional(true);
+                    paths.setPaths();
+                    total[mode] += paths.pathTo().size();
+                    total[mode] += paths.getWeight(ends[k + 1]);
+                    settled += paths.getSettledCount();
+                }
+            }
+            System.out.printf("%16s %12.1f %12d%n",
+                              mode == 0 ? "hierarchy" : "bidirectional A*",
+                              (System.nanoTime() - start) / 1e3 / queries,
+                              settled / queries);
+        }
+        assert Math.abs(total[0] - total[1]) < 1e-6 * total[0];
+    }
+
+    /** Time an ORIGINS x TARGETS table of distances between random vertices
+     *  of a SIDE x SIDE grid, computed by one A* search per pair, and by a
+     *  DistanceMatrix on one thread and on as many threads as there are
+     *  processors. */
+    static void timeDistanceMatrix(int side, int origins, int targets) {
+        Graph g = grid(side).freeze();
+        java.util.Random rand = new java.util.Random(side);
+        int[] from = new int[origins], to = new int[targets];
+        for (int i = 0; i < origins; i += 1) {
+            from[i] = 1 + rand.nextInt(side * side);
+        }
+        for (int j = 0; j < targets; j += 1) {
+            to[j] = 1 + rand.nextInt(side * side);
+        }
+        System.out.printf("%n%d x %d distance table on %d vertices%n",
+                          origins, targets, side * side);
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        double[] total = new double[3];
+        long start = System.nanoTime();
+        for (int u : from) {
+            for (int v : to) {
+                SimpleShortestPaths paths = gridPaths(g, side, u, v, work);
+                paths.setPaths();
+                total[0] += paths.getWeight(v);
+            }
+        }
+        System.out.printf("%-24s %10.1f msec%n", "A* per pair",
+                          (System.nanoTime() - start) / 1e6);
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int n = 1; n <= 2; n += 1) {
+            DistanceMatrix matrix =
+                new DistanceMatrix(g, n == 1 ? 1 : threads) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return roadWeight(u, v);
+                    }
+                };
+            start = System.nanoTime();
+            for (double[] row : matrix.distances(from, to)) {
+                for (double d : row) {
+                    total[n] += d;
+                }
+            }
+            System.out.printf("%-24s %10.1f msec%n",
+                              String.format("matrix, %d thread(s)",
+                                            n == 1 ? 1 : threads),
+                              (System.nanoTime() - start) / 1e6);
+        }
+        assert Math.abs(total[0] - total[1]) < 1e-6 * total[0]
+            && total[1] == total[2];
+    }
+
+    /** Report the vertices settled by QUERIES searches of a SIDE x SIDE grid
+     *  from a random vertex toward TARGETS random targets, settling the
+     *  whole graph, all the targets, and only the nearest target. */
+    static void timeNearestTargets(int side, int queries, int targets) {
+        Graph g = grid(side).freeze();
+        java.util.Random rand = new java.util.Random(queries);
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        System.out.printf("%n%d-target searches on %d vertices%n"
+                          + "%-16s %12s %12s%n", targets, side * side,
+                          "", "msec", "settled");
+        String[] modes = { "whole graph", "all targets", "nearest" };
+        long[] settled = new long[modes.length];
+        double[] msec = new double[modes.length];
+        for (int q = 0; q < queries; q += 1) {
+            int source = 1 + rand.nextInt(side * side);
+            int[] ends = new int[targets];
+            for (int j = 0; j < targets; j += 1) {
+                ends[j] = 1 + rand.nextInt(side * side);
+            }
+            for (int mode = 0; mode < modes.length; mode += 1) {
+                long start = System.nanoTime();
+                SimpleShortestPaths paths =
+                    mode == 0 ? new SimpleShortestPaths(g, source, 0, work) {
+                            @Override
+                            protected double getWeight(int u, int v) {
+                                return roadWeight(u, v);
+                            }
+                        }
+                    : new SimpleShortestPaths(g, source, ends,
+                                              mode == 1 ? targets : 1,
+                                              work) {
+                            @Override
+                            protected double getWeight(int u, int v) {
+                                return roadWeight(u, v);
+                            }
+                        };
+                paths.setPaths();
+                msec[mode] += (System.nanoTime() - start) / 1e6;
+                settled[mode] += paths.getSettledCount();
+            }
+        }
+        for (int mode = 0; mode < modes.length; mode += 1) {
+            System.out.printf("%-16s %12.1f %12d%n", modes[mode], msec[mode],
+                              settled[mode] / queries);
+        }
+    }
+
+    /** Compare visiting every successor of every vertex through
+     *  successors and through eachSuccessor, on a SIDE x SIDE grid and
+     *  its frozen copy. */
+    static void timeSuccessorLoops(int side) {
+        System.out.printf("%nsuccessor loops on %d vertices%n"
+                          + "%-10s %14s %14s%n", side * side, "graph",
+                          "Iteration ns", "forEach ns");
+        Graph[] graphs = { grid(side), grid(side).freeze() };
+        String[] names = { "GraphObj", "frozen" };
+        long[] sum = new long[1];
+        for (int k = 0; k < graphs.length; k += 1) {
+            Graph g = graphs[k];
+            long edges = 0;
+            for (int v = 1; v <= g.maxVertex(); v += 1) {
+                edges += g.outDegree(v);
+            }
+            long iterBest, eachBest;
+            iterBest = eachBest = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                long start = System.nanoTime();
+                for (int v = 1; v <= g.maxVertex(); v += 1) {
+                    for (int w : g.successors(v)) {
+                        sum[0] += w;
+                    }
+                }
+                iterBest = Math.min(iterBest, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int v = 1; v <= g.maxVertex(); v += 1) {
+                    g.eachSuccessor(v, w -> sum[0] += w);
+                }
+                eachBest = Math.min(eachBest, System.nanoTime() - start);
+            }
+            System.out.printf("%-10s %14.2f %14.2f%n", names[k],
+                              (double) iterBest / edges,
+                              (double) eachBest / edges);
+        }
+        assert sum[0] > 0;
+    }
+
+    /** Time closing CLOSED random intersections of a SIDE x SIDE grid
+     *  (removing their vertices), enumerating the remaining vertices, and
+     *  reopening them (adding vertices, which reuse the smallest free
+     *  numbers, and their roads again). */
+    static void timeClosures(int side, int closed) {
+        UndirectedGraph g = grid(side);
+        java.util.Random rand = new java.util.Random(closed);
+        java.util.TreeMap<Integer, java.util.List<Integer>> roads =
+            new java.util.TreeMap<>();
+        while (roads.size() < closed) {
+            int v = 1 + rand.nextInt(side * side);
+            roads.put(v, new java.util.ArrayList<>());
+        }
+        java.util.List<Integer> order =
+            new java.util.ArrayList<>(roads.keySet());
+        java.util.Collections.shuffle(order, rand);
+        long start = System.nanoTime();
+        for (int v : order) {
+            for (int w : g.successors(v)) {
+                roads.get(v).add(w);
+            }
+            g.remove(v);
+        }
+        double closeMs = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        int count;
+        count = 0;
+        for (int v : g.vertices()) {
+            count += 1;
+        }
+        double listMs = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        for (int v : roads.keySet()) {
+            int u = g.add();
+            assert u == v;
+        }
+        for (java.util.Map.Entry<Integer, java.util.List<Integer>> e
+                 : roads.entrySet()) {
+            for (int w : e.getValue()) {
+                g.add(e.getKey(), w);
+            }
+        }
+        double openMs = (System.nanoTime() - start) / 1e6;
+        assert count == side * side - closed;
+        System.out.printf("%n%d closures on %d vertices%n"
+                          + "close %.1f ms, vertices %.1f ms, "
+                          + "reopen %.1f ms%n", closed, side * side,
+                          closeMs, listMs, openMs);
+    }
+
+    /** Compare publishing a new version of a SIDE x SIDE grid with CLOSED
+     *  random roads closed against freezing a fresh copy of it, and
+     *  searching QUERIES random routes in a version against searching the
+     *  frozen copy. */
+    static void timeVersions(int side, int closed, int queries) {
+        UndirectedGraph g = grid(side);
+        java.util.Random rand = new java.util.Random(closed);
+        int[] ends = new int[2 * closed];
+        for (int k = 0; k < closed; k += 1) {
+            ends[2 * k] = 1 + rand.nextInt(side * side - 1);
+            ends[2 * k + 1] = ends[2 * k] + 1;
+        }
+        VersionedGraph versions = new VersionedGraph(g);
+        long start = System.nanoTime();
+        VersionedGraph.Editor edit = versions.edit();
+        for (int k = 0; k < closed; k += 1) {
+            edit.remove(ends[2 * k], ends[2 * k + 1]);
+        }
+        Graph version = edit.publish();
+        double publishMs = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        for (int k = 0; k < closed; k += 1) {
+            g.remove(ends[2 * k], ends[2 * k + 1]);
+        }
+        Graph frozen = g.freeze();
+        double freezeMs = (System.nanoTime() - start) / 1e6;
+        assert version.edgeSize() == frozen.edgeSize();
+
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        double[] searchMs = new double[2];
+        for (int q = 0; q < queries; q += 1) {
+            int source = 1 + rand.nextInt(side * side),
+                dest = 1 + rand.nextInt(side * side);
+            Graph[] graphs = { version, frozen };
+            double[] lengths = new double[2];
+            for (int k = 0; k < 2; k += 1) {
+                long t0 = System.nanoTime();
+                SimpleShortestPaths paths =
+                    gridPaths(graphs[k], side, source, dest, work);
+                paths.setPaths();
+                searchMs[k] += (System.nanoTime() - t0) / 1e6;
+                lengths[k] = paths.getWeight(dest);
+            }
+            assert lengths[0] == lengths[1];
+        }
+        System.out.printf("%n%d roads closed on %d vertices%n"
+                          + "publish %.2f ms, freeze %.2f ms%n"
+                          + "%d searches: version %.1f ms, frozen %.1f ms%n",
+                          closed, side * side, publishMs, freezeMs,
+                          queries, searchMs[0], searchMs[1]);
+    }
+
+    /** Time UPDATES random changes to a weight overlay on a SIDE x SIDE
+     *  grid, published every BATCH changes, on one thread and divided
+     *  among several, and compare a search by the overlaid weights with
+     *  one by the plain weights. */
+    static void timeOverlay(int side, int updates, int batch) {
+        Graph g = grid(side).freeze();
+        WeightOverlay overlay = new WeightOverlay(g, 1.0);
+        java.util.Random rand = new java.util.Random(updates);
+        long start = System.nanoTime();
+        for (int k = 0; k < updates; k += 1) {
+            int u = 1 + rand.nextInt(side * side - 1);
+            if (u % side != 0) {
+                overlay.set(u, u + 1, 1 + rand.nextDouble());
+            }
+            if (k % batch == batch - 1) {
+                overlay.publish();
+            }
+        }
+        double updateMs = (System.nanoTime() - start) / 1e6;
+        WeightOverlay.Generation traffic = overlay.publish();
+
+        Thread[] setters = new Thread[OVERLAY_THREADS];
+        for (int t = 0; t < setters.length; t += 1) {
+            final java.util.Random r = new java.util.Random(t);
+            setters[t] = new Thread(() -> {
+                for (int k = 0; k < updates / setters.length; k += 1) {
+                    int u = 1 + r.nextInt(side * side - 1);
+                    if (u % side != 0) {
+                        overlay.set(u, u + 1, 1 + r.nextDouble());
+                    }
+                }
+            });
+        }
+        start = System.nanoTime();
+        for (Thread t : setters) {
+            t.start();
+        }
+        Thread publisher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                overlay.publish();
+            }
+        });
+        publisher.start();
+        try {
+            for (Thread t : setters) {
+                t.join();
+            }
+            publisher.interrupt();
+            publisher.join();
+        } catch (InterruptedException excp) {
+            return;
+        }
+        double parallelMs = (System.nanoTime() - start) / 1e6;
+
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        double[] searchMs = new double[2];
+        for (int k = 0; k < 2; k += 1) {
+            boolean overlaid = k == 1;
+            long t0 = System.nanoTime();
+            new SimpleShortestPaths(g, 1, 0, work) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    double w = roadWeight(u, v);
+                    return overlaid ? w * traffic.get(g.edgeId(u, v)) : w;
+                }
+            }.setPaths();
+            searchMs[k] = (System.nanoTime() - t0) / 1e6;
+        }
+        System.out.printf("%n%d overlay updates on %d edges, published "
+                          + "every %d: %.1f ns each%n"
+                          + "on %d threads, published continually: "
+                          + "%.1f ns each%n"
+                          + "whole-graph search: plain %.1f ms, "
+                          + "overlaid %.1f ms%n", updates, g.edgeSize(),
+                          batch, updateMs * 1e6 / updates,
+                          setters.length, parallelMs * 1e6 / updates,
+                          searchMs[0], searchMs[1]);
+    }
+
+    /** Returns shortest paths from SOURCE to DEST in G, a SIDE x SIDE grid
+     *  as produced by grid, with edge weights given by roadWeight, using
+     *  WORK, and estimating remaining distances by grid distance. */
+    static SimpleShortestPaths gridPaths(Graph g, int side, int source,
+                                         int dest,
+                                         SimpleShortestPaths.Workspace work) {
+        return new SimpleShortestPaths(g, source, dest, work) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return roadWeight(u, v);
+            }
+
+            @Override
+            protected double estimatedDistance(int v) {
+                return gridDistance(v, dest);
+            }
+
+            @Override
+            protected double estimatedDistanceFromSource(int v) {
+                return gridDistance(source, v);
+            }
+
+            /** Returns the number of grid steps between U and V. */
+            private double gridDistance(int u, int v) {
+                return Math.abs((u - 1) / side - (v - 1) / side)
+                    + Math.abs((u - 1) % side - (v - 1) % side);
+            }
+        };
+    }
+
+    /** Returns a pseudo-random length in [1, 2) for the road between U and
+     *  V, which does not depend on the order of U and V. */
+    static double roadWeight(int u, int v) {
+        long h = ((long) Math.min(u, v) << 32 | Math.max(u, v))
+            * 0x9e3779b97f4a7c15L;
+        return 1 + ((h >>> 40) & 1023) / 1024.0;
+    }
+
+    /** Returns a SIDE x SIDE grid graph in which vertex i * SIDE + j + 1 is
+     *  joined to its neighbors to the east and south. */
+    static UndirectedGraph grid(int side) {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int k = 0; k < side * side; k += 1) {
+            g.add();
+        }
+        for (int i = 0; i < side; i += 1) {
+            for (int j = 0; j < side; j += 1) {
+                int v = i * side + j + 1;
+                if (j + 1 < side) {
+                    g.add(v, v + 1);
+                }
+                if (i + 1 < side) {
+                    g.add(v, v + side);
+                }
+            }
+        }
+        return g;
+    }
+
+    /** Perform a breadth-first search of G from V0, and return the number
+     *  of vertices reached. */
+    static int bfs(Graph g, int v0) {
+        boolean[] seen = new boolean[g.maxVertex() + 1];
+        int[] queue = new int[g.maxVertex()];
+        int head, tail;
+        head = 0;
+        tail = 1;
+        queue[0] = v0;
+        seen[v0] = true;
+        while (head < tail) {
+            int v = queue[head];
+            head += 1;
+            for (int w : g.neighbors(v)) {
+                if (!seen[w]) {
+                    seen[w] = true;
+                    queue[tail] = w;
+                    tail += 1;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /** Number of repetitions of each timing; the best is reported. */
+    private static final int TRIALS = 3;
+    /** Number of threads setting overlay values at once in timeOverlay. */
+    private static final int OVERLAY_THREADS = 4;
+}
@@ -5,7 +5,7 @@ package graph;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Queue;
-import java.util.ArrayList;
+import java.util.function.IntConsumer;
 
 /** Implements a generalized traversal of a graph.  At any given time,
  *  there is a particular collection of untraversed vertices---the "fringe."
@@ -30,15 +30,25 @@ public abstract class Traversal {
 
     /** A Traversal of G, using FRINGE as the fringe. */
     protected Traversal(Graph G, Queue<Integer> fringe) {
+        this(G, fringe, new VertexMarks.Bits(G.maxVertex()),
+             new VertexMarks.Bits(G.maxVertex()));
+    }
+
+    /** A Traversal of G, using FRINGE as the fringe, and recording marked
+     *  and post-visited vertices in MARKED and POSTVISITED, which are
+     *  assumed to be empty. */
+    Traversal(Graph G, Queue<Integer> fringe, VertexMarks marked,
+              VertexMarks postVisited) {
         _G = G;
         _fringe = fringe;
-        _markedList = new ArrayList<>();
-        postVisited = new ArrayList<>();
+        _marked = marked;
+        _postVisited = postVisited;
     }
 
     /** Unmark all vertices in the graph. */
     public void clear() {
-        _markedList.clear();
+        _marked.clear();
+        _postVisited.clear();
     }
 
     /** Initialize the fringe to V0 and perform a traversal. */
@@ -56,13 +66,11 @@ public abstract class Traversal {
                 }
                 processSuccessors(vertex);
             } else {
-                if (shouldPostVisit(vertex) && !postVisited.contains(vertex)
+                if (shouldPostVisit(vertex) && !_postVisited.get(vertex)
                         && !postVisit(vertex)) {
                     return;
                 }
-                if (!postVisited.contains(vertex)) {
-                    postVisited.add(vertex);
-                }
+                _postVisited.set(vertex);
             }
         }
     }
@@ -74,12 +82,12 @@ public abstract class Traversal {
 
     /** Returns true iff V has been marked. */
     protected boolean marked(int v) {
-        return _markedList.contains(v);
+        return _marked.get(v);
     }
 
     /** Mark vertex V. */
     protected void mark(int v) {
-        _markedList.add(v);
+        _marked.set(v);
     }
 
     /** Perform a visit on vertex V.  Returns false iff the traversal is to
@@ -110,10 +118,17 @@ public abstract class Traversal {
      *  default implementation simply processes each successor using
      *  processSuccessor. */
     protected void processSuccessors(int u) {
-        for (int v : _G.successors(u)) {
-            if (processSuccessor(u, v)) {
-                _fringe.add(v);
-            }
+        int saved = _processing;
+        _processing = u;
+        _G.eachSuccessor(u, _processSuccessor);
+        _processing = saved;
+    }
+
+    /** Process successor V of _processing, adding it to the fringe if
+     *  processSuccessor says to. */
+    private void processSuccessor(int v) {
+        if (processSuccessor(_processing, v)) {
+            _fringe.add(v);
         }
     }
 
@@ -125,10 +140,15 @@ public abstract class Traversal {
 
     /** The graph being traversed. */
     private final Graph _G;
+    /** The vertex whose successors processSuccessors is processing. */
+    private int _processing;
+    /** Applies processSuccessor(int) to each successor, created once so
+     *  that processing allocates nothing per vertex. */
+    private final IntConsumer _processSuccessor = this::processSuccessor;
     /** The fringe. */
     protected final Queue<Integer> _fringe;
-    /** ArrayList of all marked Vertices. */
-    private ArrayList<Integer> _markedList;
-    /** ArrayList of all vertices postVisited. */
-    private ArrayList<Integer> postVisited;
+    /** The marked vertices. */
+    private final VertexMarks _marked;
+    /** The vertices that have been postVisited. */
+    private final VertexMarks _postVisited;
 }
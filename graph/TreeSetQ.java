@@ -52,6 +52,11 @@ class TreeSetQ extends LinkedList<Integer> {
         return i;
     }
 
+    @Override
+    public boolean remove(Object i) {
+        return tree.remove(i);
+    }
+
     @Override
     public boolean isEmpty() {
         return tree.isEmpty();
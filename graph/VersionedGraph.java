@@ -0,0 +1,644 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/* See restrictions in Graph.java. */
+
+/** A graph that changes by publishing a series of versions, each an
+ *  immutable Graph, so that any number of threads may search the current
+ *  version without locking while the next is being prepared.  A reader
+ *  calls current() once per task and uses the Version it gets
+ *  throughout, since a Version never changes.  A writer calls edit(),
+ *  makes a batch of changes through the Editor it returns, and calls
+ *  Editor.publish() to make them all current at once.
+ *
+ *  A Version keeps the successor and predecessor rows of its vertices in
+ *  blocks of BLOCK_SIZE vertices.  An Editor copies only the blocks it
+ *  changes, and within them replaces only the rows it changes, so that
+ *  consecutive versions share all the rest: publishing a few changes
+ *  costs space in proportion to the number of blocks, not the number of
+ *  edges.  Edges keep the ids they had in the graph the VersionedGraph was
+ *  made from, and an edge that is removed and later added again gets its
+ *  old id back, so labels keyed by edge id (as in a LabeledGraph of the
+ *  original graph) apply to every version.
+ *  @author Michael Chang
+ */
+public class VersionedGraph {
+
+    /** A versioned graph whose first version has the vertices, edges, and
+     *  edge ids of G. */
+    public VersionedGraph(Graph G) {
+        _directed = G.isDirected();
+        _edgeIds = new LongIntMap();
+        Editor first = new Editor(new Version(_directed));
+        for (int v = 1; v <= G.maxVertex(); v += 1) {
+            first.newVertex(v);
+        }
+        for (int v = 1; v <= G.maxVertex(); v += 1) {
+            if (!G.contains(v)) {
+                first.removeVertex(v);
+            }
+        }
+        for (int[] e : G.edges()) {
+            int id = G.edgeId(e[0], e[1]);
+            _edgeIds.put(edgeKey(e[0], e[1]), id);
+            _nextId = Math.max(_nextId, id + 1);
+            first.addEdge(e[0], e[1], id);
+        }
+        _current = first.version();
+    }
+
+    /** Returns the most recently published version. */
+    public Version current() {
+        return _current;
+    }
+
+    /** Returns an Editor of a new version, starting from the current
+     *  one. */
+    public Editor edit() {
+        return new Editor(_current);
+    }
+
+    /** Returns the id of the edge (U, V), assigning it the next unused id
+     *  if it has never been an edge. */
+    private synchronized int idOf(int u, int v) {
+        long key = edgeKey(u, v);
+        int id = _edgeIds.get(key);
+        if (id == 0) {
+            id = _nextId;
+            _nextId += 1;
+            _edgeIds.put(key, id);
+        }
+        return id;
+    }
+
+    /** Returns the key of the edge (U, V) in _edgeIds.  The key of an
+     *  undirected edge does not depend on the order of its end points. */
+    private long edgeKey(int u, int v) {
+        if (_directed || u <= v) {
+            return LongIntMap.pack(u, v);
+        } else {
+            return LongIntMap.pack(v, u);
+        }
+    }
+
+    /** One version of a VersionedGraph.  All modifying operations throw
+     *  UnsupportedOperationException. */
+    public static class Version extends Graph {
+
+        /** An empty version of a directed graph iff DIRECTED. */
+        private Version(boolean directed) {
+            _directed = directed;
+            _blocks = new Block[0];
+            _free = new BitSet();
+            _maxVertex = _vertexSize = _edgeSize = 0;
+            _number = VERSIONS.incrementAndGet();
+        }
+
+        /** A version whose contents are those of EDITOR. */
+        private Version(Editor editor) {
+            _directed = editor._base._directed;
+            _blocks = Arrays.copyOf(editor._blocks, editor._blocks.length);
+            _free = editor._free;
+            _maxVertex = editor._maxVertex;
+            _vertexSize = editor._vertexSize;
+            _edgeSize = editor._edgeSize;
+            _number = VERSIONS.incrementAndGet();
+        }
+
+        /** Returns my number, which is larger than that of any version
+         *  (of any VersionedGraph) published before me. */
+        public long number() {
+            return _number;
+        }
+
+        @Override
+        public int vertexSize() {
+            return _vertexSize;
+        }
+
+        @Override
+        public int maxVertex() {
+            return _maxVertex;
+        }
+
+        @Override
+        public int edgeSize() {
+            return _edgeSize;
+        }
+
+        @Override
+        public boolean isDirected() {
+            return _directed;
+        }
+
+        @Override
+        public int outDegree(int v) {
+            return contains(v) ? out(v).length : 0;
+        }
+
+        @Override
+        public int inDegree(int v) {
+            return contains(v) ? in(v).length : 0;
+        }
+
+        @Override
+        public boolean contains(int u) {
+            return 0 < u && u <= _maxVertex && out(u) != null;
+        }
+
+        @Override
+        public boolean contains(int u, int v) {
+            return edgeId(u, v) != 0;
+        }
+
+        @Override
+        public int add() {
+            throw published();
+        }
+
+        @Override
+        public int add(int u, int v) {
+            throw published();
+        }
+
+        @Override
+        public void remove(int v) {
+            throw published();
+        }
+
+        @Override
+        public void remove(int u, int v) {
+            throw published();
+        }
+
+        @Override
+        public Iteration<Integer> vertices() {
+            return new Iteration<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return _v <= _maxVertex;
+                }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int v = _v;
+                    _v = _free.nextClearBit(v + 1);
+                    return v;
+                }
+
+                /** The next vertex. */
+                private int _v = _free.nextClearBit(1);
+            };
+        }
+
+        @Override
+        public Iteration<Integer> successors(int v) {
+            int[] row = contains(v) ? out(v) : EMPTY;
+            return new FrozenGraph.RowIteration(row, 0, row.length);
+        }
+
+        @Override
+        public Iteration<Integer> predecessors(int v) {
+            int[] row = contains(v) ? in(v) : EMPTY;
+            return new FrozenGraph.RowIteration(row, 0, row.length);
+        }
+
+        @Override
+        void eachSuccessor(int v, IntConsumer action) {
+            if (contains(v)) {
+                for (int w : out(v)) {
+                    action.accept(w);
+                }
+            }
+        }
+
+        @Override
+        void eachPredecessor(int v, IntConsumer action) {
+            if (contains(v)) {
+                for (int u : in(v)) {
+                    action.accept(u);
+                }
+            }
+        }
+
+        @Override
+        public Iteration<int[]> edges() {
+            return new Iteration<int[]>() {
+                @Override
+                public boolean hasNext() {
+                    while (_u <= _maxVertex) {
+                        int[] row = out(_u);
+                        while (row != null && _k < row.length) {
+                            if (_directed || _u <= row[_k]) {
+                                return true;
+                            }
+                            _k += 1;
+                        }
+                        _u += 1;
+                        _k = 0;
+                    }
+                    return false;
+                }
+
+                @Override
+                public int[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    _edge[0] = _u;
+                    _edge[1] = out(_u)[_k];
+                    _k += 1;
+                    return _edge;
+                }
+
+                /** The source vertex of the next edge. */
+                private int _u = 1;
+                /** Index of the next edge in out(_u). */
+                private int _k = 0;
+                /** The array returned by next(). */
+                private final int[] _edge = new int[2];
+            };
+        }
+
+        @Override
+        protected int edgeId(int u, int v) {
+            if (!contains(u) || !contains(v)) {
+                return 0;
+            }
+            int[] row = out(u);
+            for (int k = 0; k < row.length; k += 1) {
+                if (row[k] == v) {
+                    return outIds(u)[k];
+                }
+            }
+            return 0;
+        }
+
+        /** Returns the successors of V, or null if V is not a vertex.  V
+         *  must be no greater than _maxVertex. */
+        private int[] out(int v) {
+            return _blocks[v / BLOCK_SIZE]._out[v % BLOCK_SIZE];
+        }
+
+        /** Returns the ids of the edges to out(V), in the same order. */
+        private int[] outIds(int v) {
+            return _blocks[v / BLOCK_SIZE]._outIds[v % BLOCK_SIZE];
+        }
+
+        /** Returns the predecessors of vertex V. */
+        private int[] in(int v) {
+            return _directed ? _blocks[v / BLOCK_SIZE]._in[v % BLOCK_SIZE]
+                : out(v);
+        }
+
+        /** True iff I am directed. */
+        private final boolean _directed;
+        /** The rows of vertices K * BLOCK_SIZE .. (K + 1) * BLOCK_SIZE - 1
+         *  are in _blocks[K]. */
+        private final Block[] _blocks;
+        /** The unused vertex numbers no greater than _maxVertex. */
+        private final BitSet _free;
+        /** My largest vertex, or 0 if I am empty. */
+        private final int _maxVertex;
+        /** Number of vertices and edges. */
+        private final int _vertexSize, _edgeSize;
+        /** My number. */
+        private final long _number;
+    }
+
+    /** A batch of changes to a version, which become a new version when
+     *  published.  An Editor is meant for use by one thread at a time. */
+    public class Editor {
+
+        /** An editor of a new version, starting from BASE. */
+        private Editor(Version base) {
+            _base = base;
+            _blocks = Arrays.copyOf(base._blocks, base._blocks.length);
+            _copied = new boolean[_blocks.length];
+            _free = base._free;
+            _maxVertex = base._maxVertex;
+            _vertexSize = base._vertexSize;
+            _edgeSize = base._edgeSize;
+        }
+
+        /** Returns true iff U is a vertex of the version being edited. */
+        public boolean contains(int u) {
+            return 0 < u && u <= _maxVertex && out(u) != null;
+        }
+
+        /** Returns true iff U and V are vertices of the version being
+         *  edited and there is an edge (U, V). */
+        public boolean contains(int u, int v) {
+            return contains(u) && contains(v) && indexOf(out(u), v) >= 0;
+        }
+
+        /** Add a vertex with no incident edges, returning the smallest
+         *  positive number that is not a vertex. */
+        public int add() {
+            checkOpen();
+            int v = _free.nextSetBit(1);
+            if (v < 0) {
+                v = _maxVertex + 1;
+            }
+            newVertex(v);
+            return v;
+        }
+
+        /** Add an edge (U, V), if it is not present, and return its
+         *  id.  U and V must be vertices. */
+        public int add(int u, int v) {
+            checkOpen();
+            checkVertex(u);
+            checkVertex(v);
+            int k = indexOf(out(u), v);
+            if (k >= 0) {
+                return outIds(u)[k];
+            }
+            int id = idOf(u, v);
+            addEdge(u, v, id);
+            return id;
+        }
+
+        /** Remove V, if present, and all its incident edges. */
+        public void remove(int v) {
+            checkOpen();
+            if (!contains(v)) {
+                return;
+            }
+            for (int w : out(v)) {
+                if (w != v) {
+                    removeFromIn(w, v);
+                }
+                _edgeSize -= 1;
+            }
+            if (_directed) {
+                for (int u : in(v)) {
+                    if (u != v) {
+                        removeFromOut(u, v);
+                        _edgeSize -= 1;
+                    }
+                }
+            }
+            removeVertex(v);
+        }
+
+        /** Remove the edge (U, V), if present. */
+        public void remove(int u, int v) {
+            checkOpen();
+            if (contains(u, v)) {
+                removeFromOut(u, v);
+                if (_directed) {
+                    removeFromIn(v, u);
+                } else if (u != v) {
+                    removeFromOut(v, u);
+                }
+                _edgeSize -= 1;
+            }
+        }
+
+        /** Make my changes the current version, and return it.  Throws
+         *  IllegalStateException if another version has been published
+         *  since I was created, in which case the batch should be made
+         *  again on a new Editor, or if I have already been published. */
+        public Version publish() {
+            synchronized (VersionedGraph.this) {
+                checkOpen();
+                if (_current != _base) {
+                    throw new IllegalStateException("graph changed during "
+                                                    + "edit");
+                }
+                _current = version();
+                _published = true;
+                return _current;
+            }
+        }
+
+        /** Returns a version containing my changes. */
+        private Version version() {
+            return new Version(this);
+        }
+
+        /** Make V, which is not a vertex, a vertex with no incident
+         *  edges. */
+        private void newVertex(int v) {
+            if (v > _maxVertex) {
+                _maxVertex = v;
+                if (v / BLOCK_SIZE >= _blocks.length) {
+                    int n = Math.max(v / BLOCK_SIZE + 1, 2 * _blocks.length);
+                    _blocks = Arrays.copyOf(_blocks, n);
+                    _copied = Arrays.copyOf(_copied, n);
+                }
+            } else {
+                freeIds().clear(v);
+            }
+            Block b = block(v);
+            b._out[v % BLOCK_SIZE] = b._outIds[v % BLOCK_SIZE] = EMPTY;
+            if (_directed) {
+                b._in[v % BLOCK_SIZE] = EMPTY;
+            }
+            _vertexSize += 1;
+        }
+
+        /** Make V, a vertex with no remaining incident edges, not a
+         *  vertex. */
+        private void removeVertex(int v) {
+            Block b = block(v);
+            b._out[v % BLOCK_SIZE] = b._outIds[v % BLOCK_SIZE] = null;
+            if (_directed) {
+                b._in[v % BLOCK_SIZE] = null;
+            }
+            BitSet free = freeIds();
+            free.set(v);
+            _vertexSize -= 1;
+            if (v == _maxVertex) {
+                _maxVertex = free.previousClearBit(v);
+                free.clear(_maxVertex + 1, v + 1);
+            }
+        }
+
+        /** Add the edge (U, V), which is not present, with id ID. */
+        private void addEdge(int u, int v, int id) {
+            Block b = block(u);
+            b._out[u % BLOCK_SIZE] = append(out(u), v);
+            b._outIds[u % BLOCK_SIZE] = append(outIds(u), id);
+            if (_directed) {
+                b = block(v);
+                b._in[v % BLOCK_SIZE] = append(in(v), u);
+            } else if (u != v) {
+                b = block(v);
+                b._out[v % BLOCK_SIZE] = append(out(v), u);
+                b._outIds[v % BLOCK_SIZE] = append(outIds(v), id);
+            }
+            _edgeSize += 1;
+        }
+
+        /** Remove V from the successors of U. */
+        private void removeFromOut(int u, int v) {
+            int k = indexOf(out(u), v);
+            Block b = block(u);
+            b._out[u % BLOCK_SIZE] = delete(out(u), k);
+            b._outIds[u % BLOCK_SIZE] = delete(outIds(u), k);
+        }
+
+        /** Remove U from the predecessors of V (from its successors, if I
+         *  am undirected). */
+        private void removeFromIn(int v, int u) {
+            if (_directed) {
+                block(v)._in[v % BLOCK_SIZE] =
+                    delete(in(v), indexOf(in(v), u));
+            } else {
+                removeFromOut(v, u);
+            }
+        }
+
+        /** Returns the block holding V, copying it first if it is still
+         *  shared with _base. */
+        private Block block(int v) {
+            int k = v / BLOCK_SIZE;
+            if (!_copied[k]) {
+                _blocks[k] =
+                    _blocks[k] == null ? new Block(_directed)
+                    : new Block(_blocks[k]);
+                _copied[k] = true;
+            }
+            return _blocks[k];
+        }
+
+        /** Returns the unused vertex numbers, copying them first if they
+         *  are still shared with _base. */
+        private BitSet freeIds() {
+            if (_free == _base._free) {
+                _free = (BitSet) _free.clone();
+            }
+            return _free;
+        }
+
+        /** Returns the successors of V, or null if it is not a vertex. */
+        private int[] out(int v) {
+            Block b = _blocks[v / BLOCK_SIZE];
+            return b == null ? null : b._out[v % BLOCK_SIZE];
+        }
+
+        /** Returns the ids of the edges to out(V), in the same order. */
+        private int[] outIds(int v) {
+            return _blocks[v / BLOCK_SIZE]._outIds[v % BLOCK_SIZE];
+        }
+
+        /** Returns the predecessors of vertex V. */
+        private int[] in(int v) {
+            return _directed ? _blocks[v / BLOCK_SIZE]._in[v % BLOCK_SIZE]
+                : out(v);
+        }
+
+        /** Throw IllegalArgumentException if V is not a vertex. */
+        private void checkVertex(int v) {
+            if (!contains(v)) {
+                throw new IllegalArgumentException("vertex not from Graph");
+            }
+        }
+
+        /** Throw IllegalStateException if I have been published. */
+        private void checkOpen() {
+            if (_published) {
+                throw new IllegalStateException("edit already published");
+            }
+        }
+
+        /** The version my changes start from. */
+        private final Version _base;
+        /** The blocks of the version being made. */
+        private Block[] _blocks;
+        /** _copied[K] is true iff _blocks[K] is mine to change. */
+        private boolean[] _copied;
+        /** The unused vertex numbers no greater than _maxVertex. */
+        private BitSet _free;
+        /** Largest vertex, or 0 if none. */
+        private int _maxVertex;
+        /** Number of vertices and edges. */
+        private int _vertexSize, _edgeSize;
+        /** True iff I have been published. */
+        private boolean _published;
+    }
+
+    /** The rows of BLOCK_SIZE consecutive vertices.  Each row is an array
+     *  holding exactly the row's contents; rows are replaced, never
+     *  changed, so that they may be shared among versions.  A null
+     *  successor row marks a number that is not a vertex. */
+    private static class Block {
+
+        /** An empty block of a directed graph iff DIRECTED. */
+        Block(boolean directed) {
+            _out = new int[BLOCK_SIZE][];
+            _outIds = new int[BLOCK_SIZE][];
+            _in = directed ? new int[BLOCK_SIZE][] : null;
+        }
+
+        /** A copy of B, sharing its rows. */
+        Block(Block b) {
+            _out = b._out.clone();
+            _outIds = b._outIds.clone();
+            _in = b._in == null ? null : b._in.clone();
+        }
+
+        /** Successors of each vertex. */
+        private final int[][] _out;
+        /** Ids of the edges to the successors in _out. */
+        private final int[][] _outIds;
+        /** Predecessors of each vertex, if directed, else null. */
+        private final int[][] _in;
+    }
+
+    /** Returns a copy of ROW with X added at the end. */
+    private static int[] append(int[] row, int x) {
+        int[] result = Arrays.copyOf(row, row.length + 1);
+        result[row.length] = x;
+        return result;
+    }
+
+    /** Returns a copy of ROW without its element at index K. */
+    private static int[] delete(int[] row, int k) {
+        int[] result = Arrays.copyOf(row, row.length - 1);
+        System.arraycopy(row, k + 1, result, k, row.length - k - 1);
+        return result;
+    }
+
+    /** Returns the index of X in ROW, or -1 if it is absent. */
+    private static int indexOf(int[] row, int x) {
+        for (int k = 0; k < row.length; k += 1) {
+            if (row[k] == x) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the exception thrown by attempts to modify a Version. */
+    private static UnsupportedOperationException published() {
+        return new UnsupportedOperationException("version is published");
+    }
+
+    /** Number of vertices whose rows are kept (and copied) together. */
+    static final int BLOCK_SIZE = 64;
+    /** The row of a vertex with no incident edges. */
+    private static final int[] EMPTY = new int[0];
+    /** Source of version numbers for all VersionedGraphs. */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** True iff my versions are directed. */
+    private final boolean _directed;
+    /** The current version. */
+    private volatile Version _current;
+    /** Maps each pair (U, V) ever added as an edge, packed by edgeKey, to
+     *  its id. */
+    private final LongIntMap _edgeIds;
+    /** The next id to assign to a new edge. */
+    private int _nextId = 1;
+}
@@ -0,0 +1,101 @@
+package graph;
+
+import java.util.Arrays;
+
+/* See restrictions in Graph.java. */
+
+/** A set of marked vertices, as used by Traversal to record which
+ *  vertices it has visited.  Vertices are positive ints; the set grows as
+ *  needed when a vertex beyond its initial size is marked.
+ *  @author Michael Chang
+ */
+abstract class VertexMarks {
+
+    /** Returns true iff V is marked. */
+    abstract boolean get(int v);
+
+    /** Mark V. */
+    abstract void set(int v);
+
+    /** Unmark all vertices. */
+    abstract void clear();
+
+    /** Marks kept one bit per vertex.  Clearing takes time proportional to
+     *  the largest vertex marked. */
+    static class Bits extends VertexMarks {
+
+        /** Empty marks for vertices up to at least MAXVERTEX. */
+        Bits(int maxVertex) {
+            _words = new long[(maxVertex >> 6) + 1];
+        }
+
+        @Override
+        boolean get(int v) {
+            int w = v >> 6;
+            return w < _words.length && (_words[w] & (1L << v)) != 0;
+        }
+
+        @Override
+        void set(int v) {
+            int w = v >> 6;
+            if (w >= _words.length) {
+                _words = Arrays.copyOf(_words, Math.max(w + 1,
+                                                        2 * _words.length));
+            }
+            _words[w] |= 1L << v;
+            _used = Math.max(_used, w + 1);
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(_words, 0, _used, 0L);
+            _used = 0;
+        }
+
+        /** Bit V % 64 of _words[V / 64] is set iff V is marked. */
+        private long[] _words;
+        /** One more than the index of the last word that may be nonzero. */
+        private int _used;
+    }
+
+    /** Marks kept as one int stamp per vertex: V is marked iff its stamp
+     *  equals the current epoch.  Clearing just advances the epoch, so it
+     *  takes constant time, which suits traversals that are cleared and
+     *  rerun many times. */
+    static class Stamps extends VertexMarks {
+
+        /** Empty marks for vertices up to at least MAXVERTEX. */
+        Stamps(int maxVertex) {
+            _stamps = new int[maxVertex + 1];
+            _epoch = 1;
+        }
+
+        @Override
+        boolean get(int v) {
+            return v < _stamps.length && _stamps[v] == _epoch;
+        }
+
+        @Override
+        void set(int v) {
+            if (v >= _stamps.length) {
+                _stamps = Arrays.copyOf(_stamps, Math.max(v + 1,
+                                                          2 * _stamps.length));
+            }
+            _stamps[v] = _epoch;
+        }
+
+        @Override
+        void clear() {
+            if (_epoch == Integer.MAX_VALUE) {
+                Arrays.fill(_stamps, 0);
+                _epoch = 0;
+            }
+            _epoch += 1;
+        }
+
+        /** The epoch in which each vertex was last marked. */
+        private int[] _stamps;
+        /** The current epoch. */
+        private int _epoch;
+    }
+}
@@ -0,0 +1,226 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* See restrictions in Graph.java. */
+
+/** Values, such as congestion factors or live travel times, attached to
+ *  the edges of a graph by edge id and changed while the graph is being
+ *  searched.  Changes are made with set, from any number of threads at
+ *  once, and take effect together when publish makes them a new
+ *  Generation.  A Generation never changes, so a search that reads one
+ *  Generation throughout sees consistent values however many are
+ *  published meanwhile.
+ *
+ *  The values are kept in double arrays of CHUNK_SIZE edge ids each.
+ *  Successive generations share the chunks that did not change between
+ *  them, so that publishing costs time and space in proportion to the
+ *  number of chunks changed (plus one pointer per chunk), not to the
+ *  number of edges.  The chunks are divided among STRIPES locks, and
+ *  set holds only the lock of the chunk it changes, so that threads
+ *  setting values in different chunks seldom wait for one another and
+ *  share no counters; publish holds all of them.
+ *  @author Michael Chang
+ */
+public class WeightOverlay {
+
+    /** An overlay on the edges of G, giving each edge the value
+     *  INITIAL until it is set.  Edges added to G later (with larger ids)
+     *  also start out with INITIAL. */
+    public WeightOverlay(Graph G, double initial) {
+        _G = G;
+        _initial = initial;
+        _chunks = new double[0][];
+        _copied = new boolean[0];
+        _stripes = new ReentrantLock[STRIPES];
+        for (int s = 0; s < STRIPES; s += 1) {
+            _stripes[s] = new ReentrantLock();
+        }
+        _changed = new int[STRIPES];
+        _current = new Generation(this);
+    }
+
+    /** Returns the most recently published generation. */
+    public Generation current() {
+        return _current;
+    }
+
+    /** Set the value of the edge (U, V) of my graph to VALUE in the next
+     *  generation.  VALUE must be non-negative. */
+    public void set(int u, int v, double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("negative or NaN weight");
+        }
+        int id = _G.edgeId(u, v);
+        if (id == 0) {
+            throw new IllegalArgumentException("no such edge");
+        }
+        int k = id / CHUNK_SIZE, s = k % STRIPES;
+        while (true) {
+            _stripes[s].lock();
+            try {
+                if (k < _chunks.length) {
+                    double[] chunk = chunk(k);
+                    double old = chunk[id % CHUNK_SIZE];
+                    if (old == _initial && value != _initial) {
+                        _changed[s] += 1;
+                    } else if (old != _initial && value == _initial) {
+                        _changed[s] -= 1;
+                    }
+                    chunk[id % CHUNK_SIZE] = value;
+                    return;
+                }
+            } finally {
+                _stripes[s].unlock();
+            }
+            grow(k);
+        }
+    }
+
+    /** Make the values set since the last call current, as a new
+     *  generation, and return it. */
+    public Generation publish() {
+        lockAll();
+        try {
+            _current = new Generation(this);
+            Arrays.fill(_copied, false);
+            return _current;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /** Make room for chunk K of the next generation. */
+    private void grow(int k) {
+        lockAll();
+        try {
+            if (k >= _chunks.length) {
+                int n = Math.max(k + 1, 2 * _chunks.length);
+                _chunks = Arrays.copyOf(_chunks, n);
+                _copied = Arrays.copyOf(_copied, n);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /** Acquire all my stripe locks, in order. */
+    private void lockAll() {
+        for (ReentrantLock stripe : _stripes) {
+            stripe.lock();
+        }
+    }
+
+    /** Release all my stripe locks. */
+    private void unlockAll() {
+        for (ReentrantLock stripe : _stripes) {
+            stripe.unlock();
+        }
+    }
+
+    /** Returns chunk K of the next generation, creating or copying it
+     *  first if it is shared with the current one.  The caller holds the
+     *  stripe lock of K. */
+    private double[] chunk(int k) {
+        if (!_copied[k]) {
+            if (_chunks[k] == null) {
+                _chunks[k] = new double[CHUNK_SIZE];
+                Arrays.fill(_chunks[k], _initial);
+            } else {
+                _chunks[k] = _chunks[k].clone();
+            }
+            _copied[k] = true;
+        }
+        return _chunks[k];
+    }
+
+    /** One published set of values. */
+    public static class Generation {
+
+        /** The values currently set in OVERLAY. */
+        private Generation(WeightOverlay overlay) {
+            _G = overlay._G;
+            _initial = overlay._initial;
+            _chunks = overlay._chunks.clone();
+            int changed;
+            changed = 0;
+            for (int n : overlay._changed) {
+                changed += n;
+            }
+            _changed = changed;
+            _number = GENERATIONS.incrementAndGet();
+        }
+
+        /** Returns my number, which is larger than that of any generation
+         *  (of any WeightOverlay) published before me. */
+        public long number() {
+            return _number;
+        }
+
+        /** Returns my value for the edge (U, V), which must be an edge of
+         *  the overlay's graph. */
+        public double get(int u, int v) {
+            int id = _G.edgeId(u, v);
+            if (id == 0) {
+                throw new IllegalArgumentException("no such edge");
+            }
+            return get(id);
+        }
+
+        /** Returns my value for the edge whose id is ID, as returned by
+         *  edgeId for the overlay's graph (and so by add).  Searches that
+         *  already know an edge's id may use this to avoid looking it up
+         *  again. */
+        public double get(int id) {
+            int k = id / CHUNK_SIZE;
+            if (k >= _chunks.length || _chunks[k] == null) {
+                return _initial;
+            }
+            return _chunks[k][id % CHUNK_SIZE];
+        }
+
+        /** Returns the number of edges whose values are not the initial
+         *  one, so that clients may skip lookups when it is 0. */
+        public int changedCount() {
+            return _changed;
+        }
+
+        /** The graph whose edges I describe. */
+        private final Graph _G;
+        /** The value of edges never set. */
+        private final double _initial;
+        /** The values of edges K * CHUNK_SIZE .. (K + 1) * CHUNK_SIZE - 1
+         *  are in _chunks[K], or are all _initial if it is null. */
+        private final double[][] _chunks;
+        /** Number of values differing from _initial. */
+        private final int _changed;
+        /** My number. */
+        private final long _number;
+    }
+
+    /** Number of edge ids whose values are kept (and copied) together. */
+    static final int CHUNK_SIZE = 128;
+    /** Number of locks among which the chunks are divided. */
+    static final int STRIPES = 64;
+    /** Source of generation numbers for all WeightOverlays. */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /** The graph whose edges I describe. */
+    private final Graph _G;
+    /** The value of edges never set. */
+    private final double _initial;
+    /** The chunks of values of the next generation. */
+    private double[][] _chunks;
+    /** _copied[K] iff _chunks[K] belongs to the next generation only. */
+    private boolean[] _copied;
+    /** _changed[S] is the number of values differing from _initial in
+     *  the chunks guarded by _stripes[S]. */
+    private final int[] _changed;
+    /** _stripes[K % STRIPES] guards chunk K of _chunks and _copied; all
+     *  of them guard the arrays themselves. */
+    private final ReentrantLock[] _stripes;
+    /** The current generation. */
+    private volatile Generation _current;
+}
@@ -0,0 +1,158 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static trip.Main.LISTSEP;
+
+/** A planner of many trips at once against one Trip, whose map is read
+ *  once and shared by all of them.  Requests are read one per line, each
+ *  a comma-separated list of locations (as separated by Main.LISTSEP);
+ *  blank lines are skipped.  They are planned in blocks of BLOCK_SIZE
+ *  lines on a fork-join pool, and the directions for each block are
+ *  written in the order of the requests before the next block is
+ *  read, so that memory use does not grow with the number of requests.
+ *  @author Michael Chang
+ */
+class Batch {
+
+    /** A batch planner that plans trips with TRIP, whose map must have
+     *  been read, on up to THREADS threads at once.  TRIP should plan
+     *  legs on one thread, since its trips are already planned in
+     *  parallel. */
+    Batch(Trip trip, int threads) {
+        _trip = trip;
+        _threads = threads;
+    }
+
+    /** Write each route as one line of JSON (see Route.appendJson) iff ON,
+     *  rather than as text directions. */
+    void setJson(boolean on) {
+        _json = on;
+    }
+
+    /** Plan the trips requested on IN, and write their directions to OUT
+     *  in order.  Report failed requests, by line number, on ERRORS.
+     *  Returns the number of failed requests. */
+    int run(BufferedReader in, Writer out, PrintStream errors)
+        throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        int failures, lineNum;
+        failures = lineNum = 0;
+        try {
+            ArrayList<String> lines = new ArrayList<>();
+            boolean done;
+            done = false;
+            while (!done) {
+                lines.clear();
+                while (lines.size() < BLOCK_SIZE) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        done = true;
+                        break;
+                    }
+                    lines.add(line.trim());
+                }
+                String[] answers = new String[lines.size()];
+                boolean[] failed = new boolean[lines.size()];
+                pool.invoke(new Plan(lines, answers, failed, 0,
+                                     lines.size()));
+                for (int k = 0; k < answers.length; k += 1) {
+                    lineNum += 1;
+                    if (failed[k]) {
+                        errors.printf("trip: line %d: %s%n", lineNum,
+                                      answers[k]);
+                        failures += 1;
+                    } else if (answers[k] != null) {
+                        out.write(answers[k]);
+                    }
+                }
+            }
+            out.flush();
+        } finally {
+            pool.shutdown();
+        }
+        return failures;
+    }
+
+    /** Plans the trips requested by LINES[LO .. HI - 1], splitting the
+     *  range among subtasks when it is large. */
+    private class Plan extends RecursiveAction {
+
+        /** A task that sets ANSWERS[K] to the directions for the trip
+         *  LINES[K] (or null for a blank line), or to an error message
+         *  with FAILED[K] set, for LO <= K < HI. */
+        Plan(ArrayList<String> lines, String[] answers, boolean[] failed,
+             int lo, int hi) {
+            _lines = lines;
+            _answers = answers;
+            _failed = failed;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > GRAIN) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Plan(_lines, _answers, _failed, _lo, mid),
+                          new Plan(_lines, _answers, _failed, mid, _hi));
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            TextDirections directions = new TextDirections(text);
+            for (int k = _lo; k < _hi; k += 1) {
+                String line = _lines.get(k);
+                if (line.isEmpty()) {
+                    continue;
+                }
+                text.setLength(0);
+                try {
+                    List<String> dests = Arrays.asList(LISTSEP.split(line));
+                    if (_json) {
+                        _trip.planTrip(dests).appendJson(text);
+                    } else {
+                        _trip.makeTrip(dests, directions);
+                    }
+                    _answers[k] = text.toString();
+                } catch (IllegalArgumentException excp) {
+                    _answers[k] = excp.getMessage();
+                    _failed[k] = true;
+                }
+            }
+        }
+
+        /** Version of my serialized form (tasks are never serialized). */
+        private static final long serialVersionUID = 1L;
+
+        /** The requests of the current block. */
+        private final ArrayList<String> _lines;
+        /** The answers to the requests in _lines. */
+        private final String[] _answers;
+        /** _failed[K] is true iff _answers[K] is an error message. */
+        private final boolean[] _failed;
+        /** Range of indices into _lines that I plan. */
+        private final int _lo, _hi;
+    }
+
+    /** Number of request lines read and planned at a time. */
+    static final int BLOCK_SIZE = 8192;
+    /** Maximum number of requests planned by one task without
+     *  splitting. */
+    private static final int GRAIN = 16;
+
+    /** Plans the trips requested. */
+    private final Trip _trip;
+    /** Number of threads planning trips. */
+    private final int _threads;
+    /** True iff routes are written as JSON. */
+    private boolean _json;
+}
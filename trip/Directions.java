@@ -0,0 +1,54 @@
+package trip;
+
+/** A receiver of the directions for a trip, as produced by
+ *  Trip.makeTrip.  Directions consist of the name of the starting
+ *  location followed by numbered steps, each of which follows one road
+ *  (or several adjacent roads with the same name and direction) for some
+ *  distance.  The last step of each leg of the trip names the location
+ *  at which the leg ends.  Route.Builder collects directions into a
+ *  Route, and TextDirections writes them as text.
+ *  @author Michael Chang
+ */
+interface Directions {
+
+    /** Begin the directions for a trip starting at the location named
+     *  FROM. */
+    void start(String from);
+
+    /** Add step number SEQ, which follows the road named ROAD in
+     *  DIRECTION (the full name of a Direction, such as "north") for
+     *  LENGTH miles, ending at the location named TO if it ends a leg of
+     *  the trip, and otherwise with TO null. */
+    void step(int seq, String road, String direction, double length,
+              String to);
+
+    /** Deliver any directions held back so far, as before an error is
+     *  reported or when a trip is complete. */
+    void flush();
+
+    /** One step of a trip's directions, as passed to step. */
+    class Step {
+        /** Step SEQ along ROAD in DIRECTION for LENGTH miles, ending at TO
+         *  (or null). */
+        Step(int seq, String road, String direction, double length,
+             String to) {
+            this.seq = seq;
+            this.road = road;
+            this.direction = direction;
+            this.length = length;
+            this.to = to;
+        }
+
+        /** The number of the step. */
+        final int seq;
+        /** The name of the road followed. */
+        final String road;
+        /** The full name of the direction of travel. */
+        final String direction;
+        /** The distance traveled, in miles. */
+        final double length;
+        /** The location at the end of the leg ended by this step, or null
+         *  if it does not end a leg. */
+        final String to;
+    }
+}
@@ -0,0 +1,302 @@
+package trip;
+
+import graph.Graph;
+import graph.GraphFilter;
+import graph.Iteration;
+import graph.SimpleShortestPaths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.Arrays;
+
+import static trip.Main.error;
+
+/** Precomputed shortest-path distances between every vertex of a graph and
+ *  a few landmark vertices, which give lower bounds on the distances
+ *  between any two vertices by the triangle inequality (the ALT
+ *  heuristic): for any landmark L, the distance from U to V is at least
+ *  dist(L, V) - dist(L, U) and at least dist(U, L) - dist(V, L).  Unlike
+ *  straight-line distance, these bounds follow the roads, and so remain
+ *  tight where roads wind.  The distances are kept in two arrays of
+ *  doubles, each holding the distances of one vertex to or from all the
+ *  landmarks together.  Landmarks may be written to a file and read back;
+ *  the file records a checksum of the graph and its edge weights, so that
+ *  landmarks are not used with a map other than the one they describe.
+ *  @author Michael Chang
+ */
+class Landmarks {
+
+    /** Edge weights of a graph. */
+    interface Weights {
+        /** Returns the weight of edge (U, V). */
+        double weight(int u, int v);
+    }
+
+    /** Up to K landmarks for G, whose edge weights are WEIGHTS.  The first
+     *  landmark is the vertex farthest from an arbitrary vertex, and each
+     *  later one is the vertex farthest from the nearest landmark so far,
+     *  which spreads them around the edges of the graph, where they give
+     *  the best bounds.  Each landmark costs two one-to-all searches. */
+    Landmarks(Graph G, int k, Weights weights) {
+        _maxVertex = G.maxVertex();
+        _edgeSize = G.edgeSize();
+        _checksum = checksum(G, weights);
+        int[] chosen = new int[k];
+        _from = new double[(_maxVertex + 1) * k];
+        _to = new double[(_maxVertex + 1) * k];
+        _size = k;
+
+        SimpleShortestPaths.Workspace work =
+            new SimpleShortestPaths.Workspace();
+        Iteration<Integer> vertices = G.vertices();
+        double[] nearest = new double[_maxVertex + 1];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        if (vertices.hasNext()) {
+            distances(G, vertices.next(), weights, work, nearest, 0, 1);
+        }
+        for (int i = 0; i < k; i += 1) {
+            int next;
+            next = 0;
+            for (int v : G.vertices()) {
+                if (next == 0 || nearest[v] > nearest[next]) {
+                    next = v;
+                }
+            }
+            if (next == 0 || nearest[next] == 0) {
+                k = i;
+                break;
+            }
+            chosen[i] = next;
+            distances(G, next, weights, work, _from, i, _size);
+            distances(new Reversed(G), next, (u, v) -> weights.weight(v, u),
+                      work, _to, i, _size);
+            for (int v = 1; v <= _maxVertex; v += 1) {
+                double d = _from[v * _size + i];
+                nearest[v] = i == 0 ? d : Math.min(nearest[v], d);
+            }
+        }
+        _landmarks = Arrays.copyOf(chosen, k);
+    }
+
+    /** Landmarks LANDMARKS for a graph with maximum vertex MAXVERTEX,
+     *  EDGESIZE edges, and checksum CHECKSUM, with distance tables FROM
+     *  and TO. */
+    private Landmarks(int[] landmarks, int maxVertex, int edgeSize,
+                      long checksum, double[] from, double[] to) {
+        _landmarks = landmarks;
+        _size = landmarks.length;
+        _maxVertex = maxVertex;
+        _edgeSize = edgeSize;
+        _checksum = checksum;
+        _from = from;
+        _to = to;
+    }
+
+    /** Returns the number of landmarks. */
+    int size() {
+        return _landmarks.length;
+    }
+
+    /** Returns landmark #I. */
+    int landmark(int i) {
+        return _landmarks[i];
+    }
+
+    /** Returns a lower bound on the weight of a shortest path from U to V
+     *  (which is infinite if the landmarks show there is none). */
+    double lowerBound(int u, int v) {
+        double best;
+        best = 0;
+        int ku = u * _size, kv = v * _size;
+        for (int i = 0; i < _landmarks.length; i += 1) {
+            double b1 = _from[kv + i] - _from[ku + i],
+                b2 = _to[ku + i] - _to[kv + i];
+            if (b1 > best) {
+                best = b1;
+            }
+            if (b2 > best) {
+                best = b2;
+            }
+        }
+        return best;
+    }
+
+    /** Returns true iff I was computed for G with edge weights WEIGHTS:
+     *  that is, for a graph of the same size with the same edges and
+     *  weights (as far as a checksum can tell). */
+    boolean fits(Graph G, Weights weights) {
+        return G.maxVertex() == _maxVertex && G.edgeSize() == _edgeSize
+            && checksum(G, weights) == _checksum;
+    }
+
+    /** Returns a checksum of the edges of G and their weights, WEIGHTS,
+     *  that does not depend on the order in which G lists them. */
+    static long checksum(Graph G, Weights weights) {
+        long sum;
+        sum = 0;
+        for (int v : G.vertices()) {
+            for (int w : G.successors(v)) {
+                long h = mix(v * 0x9e3779b97f4a7c15L + w);
+                h += Double.doubleToLongBits(weights.weight(v, w));
+                sum += mix(h);
+            }
+        }
+        return sum;
+    }
+
+    /** Returns H with its bits thoroughly mixed (the finalizer of the
+     *  SplitMix64 generator). */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /** Write me to the file named NAME. */
+    void write(String name) throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_maxVertex);
+            out.writeInt(_edgeSize);
+            out.writeLong(_checksum);
+            out.writeInt(_landmarks.length);
+            for (int v : _landmarks) {
+                out.writeInt(v);
+            }
+            for (int v = 0; v <= _maxVertex; v += 1) {
+                for (int i = 0; i < _landmarks.length; i += 1) {
+                    out.writeDouble(_from[v * _size + i]);
+                }
+            }
+            for (int v = 0; v <= _maxVertex; v += 1) {
+                for (int i = 0; i < _landmarks.length; i += 1) {
+                    out.writeDouble(_to[v * _size + i]);
+                }
+            }
+        }
+    }
+
+    /** Returns the landmarks in the file named NAME, as written by
+     *  write. */
+    static Landmarks read(String name) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel chan = new FileInputStream(name).getChannel()) {
+            buf = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        }
+        Landmarks result;
+        result = null;
+        try {
+            if (buf.getInt() != MAGIC) {
+                error("%s is not a landmark file", name);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                error("unsupported landmark file version %d", version);
+            }
+            int maxVertex = buf.getInt(), edgeSize = buf.getInt();
+            long checksum = buf.getLong();
+            int k = buf.getInt();
+            int[] landmarks = new int[k];
+            double[] from = new double[(maxVertex + 1) * k],
+                to = new double[(maxVertex + 1) * k];
+            buf.asIntBuffer().get(landmarks);
+            buf.position(buf.position() + 4 * k);
+            buf.asDoubleBuffer().get(from);
+            buf.position(buf.position() + 8 * from.length);
+            buf.asDoubleBuffer().get(to);
+            result = new Landmarks(landmarks, maxVertex, edgeSize, checksum,
+                                   from, to);
+        } catch (RuntimeException excp) {
+            if (excp instanceof IllegalArgumentException) {
+                throw excp;
+            }
+            error("corrupt landmark file %s", name);
+        }
+        return result;
+    }
+
+    /** Set TABLE[V * STRIDE + I] to the weight of a shortest path in G,
+     *  whose edge weights are WEIGHTS, from SOURCE to V, for every V,
+     *  using WORK for the search. */
+    private static void distances(Graph G, int source, Weights weights,
+                                  SimpleShortestPaths.Workspace work,
+                                  double[] table, int i, int stride) {
+        SimpleShortestPaths paths =
+            new SimpleShortestPaths(G, source, 0, work) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return weights.weight(u, v);
+                }
+            };
+        paths.setPaths();
+        for (int v = 0; v <= G.maxVertex(); v += 1) {
+            table[v * stride + i] = paths.getWeight(v);
+        }
+    }
+
+    /** A view of a graph with all its edges reversed. */
+    private static class Reversed extends GraphFilter {
+        /** The reverse of G. */
+        Reversed(Graph G) {
+            super(G);
+        }
+
+        @Override
+        public int outDegree(int v) {
+            return super.inDegree(v);
+        }
+
+        @Override
+        public int inDegree(int v) {
+            return super.outDegree(v);
+        }
+
+        @Override
+        public boolean contains(int u, int v) {
+            return super.contains(v, u);
+        }
+
+        @Override
+        public Iteration<Integer> successors(int v) {
+            return super.predecessors(v);
+        }
+
+        @Override
+        public Iteration<Integer> predecessors(int v) {
+            return super.successors(v);
+        }
+
+        @Override
+        protected int edgeId(int u, int v) {
+            return super.edgeId(v, u);
+        }
+    }
+
+    /** First word of a landmark file ("LMRK" in ASCII). */
+    static final int MAGIC = 0x4c4d524b;
+    /** Version of the landmark file format written by write. */
+    static final int VERSION = 2;
+
+    /** The landmark vertices. */
+    private final int[] _landmarks;
+    /** Number of entries per vertex in _from and _to. */
+    private final int _size;
+    /** Maximum vertex and number of edges of the graph. */
+    private final int _maxVertex, _edgeSize;
+    /** Checksum of the graph's edges and weights (see checksum). */
+    private final long _checksum;
+    /** _from[V * _size + I] is the distance from landmark I to V. */
+    private final double[] _from;
+    /** _to[V * _size + I] is the distance from V to landmark I. */
+    private final double[] _to;
+}
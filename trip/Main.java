@@ -1,10 +1,22 @@
 package trip;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.FileNotFoundException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
 
 import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import ucb.util.CommandArgs;
@@ -16,15 +28,57 @@ public final class Main {
 
     /** Describes separator in a comma-separated list. */
     static final Pattern LISTSEP = Pattern.compile("\\s*,\\s*");
+    /** Number of routes kept by the server for reuse. */
+    private static final int SERVER_CACHE_SIZE = 10000;
+    /** Size of the buffers used to read and write batches of trips. */
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
 
     /** Entry point for the CS61B trip program.  RAWARGS may contain options
      *  and targets:
      *      [ -m MAP ] [ -o OUT ] [ REQUEST ]
      *  where MAP (default Map) contains the map data, OUT (default standard
      *  output) takes the result, and REQUEST (default standard input) contains
-     *  the locations along the requested trip.
+     *  the locations along the requested trip.  Alternatively, RAWARGS may
+     *  be
+     *      compile MAP OUT [ LANDMARKS ]
+     *  which reads MAP (in either format) and writes it to OUT as a
+     *  compiled map, which may then be given to -m for fast loading.  If
+     *  LANDMARKS is present, that many landmarks are also chosen and
+     *  written alongside OUT, to speed up searches of the compiled map.
+     *  Finally, RAWARGS may be
+     *      serve [ --hierarchy ] [ --bidirectional ] MAP [ PORT ]
+     *  which reads MAP once and then answers trip requests, one per line,
+     *  from the standard input or, if PORT is present, from connections
+     *  to that port on the local host (see Server).  Requests may also
+     *  close, reopen, and slow roads, and find the locations nearest a
+     *  position, while the server runs.  Or RAWARGS may be
+     *      batch [ --json ] [ --hierarchy ] [ --bidirectional ] MAP
+     *            REQUESTS [ OUT ]
+     *  which reads MAP once and writes directions for each trip listed in
+     *  REQUESTS, one comma-separated list of locations per line, to OUT
+     *  (default standard output), planning many trips at once (see
+     *  Batch).  With --json, each route is written as one line of JSON
+     *  instead.  With --hierarchy, serve and batch first contract MAP
+     *  into a contraction hierarchy, which takes a while but then answers
+     *  each trip far faster; while any road is closed or has traffic set,
+     *  trips are planned without it, as the "stats" request reports.
+     *  With --bidirectional, trips planned without a hierarchy search from
+     *  both ends of each leg at once, which settles fewer locations on
+     *  large maps.
      */
     public static void main(String... rawArgs) {
+        if (rawArgs.length > 0 && rawArgs[0].equals("compile")) {
+            compile(Arrays.copyOfRange(rawArgs, 1, rawArgs.length));
+            return;
+        }
+        if (rawArgs.length > 0 && rawArgs[0].equals("serve")) {
+            serve(Arrays.copyOfRange(rawArgs, 1, rawArgs.length));
+            return;
+        }
+        if (rawArgs.length > 0 && rawArgs[0].equals("batch")) {
+            batch(Arrays.copyOfRange(rawArgs, 1, rawArgs.length));
+            return;
+        }
         String mapFileName;
         String outFileName;
         List<String> targets;
@@ -52,6 +106,141 @@ public final class Main {
         }
     }
 
+    /** Compile the map named ARGS[0] into the file named ARGS[1], with
+     *  ARGS[2] landmarks if present. */
+    private static void compile(String... args) {
+        if (args.length != 2 && args.length != 3) {
+            usage();
+        }
+        int landmarks;
+        landmarks = 0;
+        if (args.length == 3) {
+            try {
+                landmarks = Integer.parseInt(args[2]);
+            } catch (NumberFormatException excp) {
+                usage();
+            }
+        }
+        try {
+            Trip trip = new Trip();
+            trip.readMap(args[0]);
+            trip.compileMap(args[1]);
+            if (landmarks > 0) {
+                trip.computeLandmarks(landmarks);
+                trip.writeLandmarks(args[1] + Trip.LANDMARK_SUFFIX);
+            }
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("trip: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Serve trip requests on the map named ARGS[0], from the standard
+     *  input, or from port ARGS[1] of the local host if present.  ARGS
+     *  may begin with --hierarchy and --bidirectional (see configure). */
+    private static void serve(String... args) {
+        List<String> options = new ArrayList<>();
+        args = options(args, options, "--hierarchy", "--bidirectional");
+        if (args.length != 1 && args.length != 2) {
+            usage();
+        }
+        int port;
+        port = -1;
+        if (args.length == 2) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException excp) {
+                usage();
+            }
+        }
+        try {
+            Trip trip = new Trip();
+            trip.readMap(args[0]);
+            configure(trip, options);
+            trip.setCacheSize(SERVER_CACHE_SIZE);
+            Server server = new Server(trip);
+            if (port < 0) {
+                server.serve(new BufferedReader(
+                                 new InputStreamReader(System.in)),
+                             System.out);
+            } else {
+                try (ServerSocket socket =
+                     new ServerSocket(port, 0,
+                                      InetAddress.getLoopbackAddress())) {
+                    System.err.printf("trip: serving on port %d%n",
+                                      socket.getLocalPort());
+                    server.serve(socket);
+                }
+            }
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("trip: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Plan the trips requested in the file named ARGS[1] on the map named
+     *  ARGS[0], writing their directions to the file named ARGS[2], if
+     *  present, and otherwise to the standard output.  ARGS may begin
+     *  with --json, to write routes as JSON, and with --hierarchy and
+     *  --bidirectional (see configure).  Exits abnormally if any request
+     *  fails. */
+    private static void batch(String... args) {
+        List<String> options = new ArrayList<>();
+        args = options(args, options, "--json", "--hierarchy",
+                       "--bidirectional");
+        if (args.length != 2 && args.length != 3) {
+            usage();
+        }
+        int failures;
+        failures = 0;
+        try {
+            Trip trip = new Trip(1);
+            trip.readMap(args[0]);
+            configure(trip, options);
+            Batch batch =
+                new Batch(trip, Runtime.getRuntime().availableProcessors());
+            batch.setJson(options.contains("--json"));
+            try (BufferedReader in = new BufferedReader(new FileReader(args[1]),
+                                                        BATCH_BUFFER_SIZE);
+                 Writer out = new BufferedWriter(
+                     args.length == 3 ? new FileWriter(args[2])
+                     : new OutputStreamWriter(System.out), BATCH_BUFFER_SIZE)) {
+                failures = batch.run(in, out, System.err);
+            }
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("trip: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /** Returns ARGS without its leading options (the words beginning with
+     *  "--"), adding each of them to OPTIONS.  Prints a usage message and
+     *  exits if any is not among ALLOWED. */
+    private static String[] options(String[] args, List<String> options,
+                                    String... allowed) {
+        int k;
+        for (k = 0; k < args.length && args[k].startsWith("--"); k += 1) {
+            if (!Arrays.asList(allowed).contains(args[k])) {
+                usage();
+            }
+            options.add(args[k]);
+        }
+        return Arrays.copyOfRange(args, k, args.length);
+    }
+
+    /** Prepare TRIP, whose map has been read, to plan trips as OPTIONS
+     *  direct: --hierarchy builds a contraction hierarchy to answer them
+     *  (see Trip.buildHierarchy), and --bidirectional searches from both
+     *  ends of each leg (see Trip.setBidirectional). */
+    private static void configure(Trip trip, List<String> options) {
+        trip.setBidirectional(options.contains("--bidirectional"));
+        if (options.contains("--hierarchy")) {
+            trip.buildHierarchy();
+        }
+    }
 
     /** Set System.in to read from INFILE, if non-null; otherwise, leaves
      *  System.in unchanged.  Set System.out to go to OUTFILE, if non-null;
@@ -79,7 +268,14 @@ public final class Main {
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.printf("Usage: java trip.Main [ -m MAPFILE ] [ -o OUTFILE ]"
-                          + " [ REQUESTFILE ]%n");
+                          + " [ REQUESTFILE ]%n"
+                          + "       java trip.Main compile MAPFILE OUTFILE"
+                          + " [ LANDMARKS ]%n"
+                          + "       java trip.Main serve [ --hierarchy ]"
+                          + " [ --bidirectional ] MAPFILE [ PORT ]%n"
+                          + "       java trip.Main batch [ --json ]"
+                          + " [ --hierarchy ] [ --bidirectional ] MAPFILE"
+                          + " REQUESTFILE [ OUTFILE ]%n");
         System.exit(1);
     }
 
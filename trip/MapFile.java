@@ -0,0 +1,254 @@
+package trip;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static trip.Main.error;
+
+/** The contents of a compiled map, laid out as they are in a compiled map
+ *  file.  Locations are numbered 1 .. numLocations(), and the roads
+ *  leaving location V are numbered offsets[V] .. offsets[V + 1] - 1, in
+ *  compressed sparse row form.  A compiled map file holds, in order
+ *  (all numbers big-endian):
+ *      int MAGIC, int VERSION,
+ *      int numLocations, int numRoads, int numStrings,
+ *      int offsets[1 .. numLocations + 1], int targets[numRoads],
+ *      int locationNames[numLocations], int roadNames[numRoads],
+ *      int stringEnds[numStrings],
+ *      double x[numLocations], double y[numLocations],
+ *      double lengths[numRoads],
+ *      byte directions[numRoads] (ordinals of Direction),
+ *      the UTF-8 bytes of all strings, concatenated,
+ *  where names are indices into the string table, and string K occupies
+ *  the bytes from stringEnds[K - 1] (or 0) up to stringEnds[K].
+ *  Reading maps the file into memory and copies each section in bulk, so
+ *  that no text need be parsed.
+ *  @author Michael Chang
+ */
+class MapFile {
+
+    /** An empty map with room for NUMLOCATIONS locations and NUMROADS
+     *  roads. */
+    MapFile(int numLocations, int numRoads) {
+        offsets = new int[numLocations + 2];
+        targets = new int[numRoads];
+        x = new double[numLocations + 1];
+        y = new double[numLocations + 1];
+        locationNames = new String[numLocations + 1];
+        lengths = new double[numRoads];
+        directions = new Direction[numRoads];
+        roadNames = new String[numRoads];
+    }
+
+    /** Returns the number of locations. */
+    int numLocations() {
+        return offsets.length - 2;
+    }
+
+    /** Returns the number of roads. */
+    int numRoads() {
+        return targets.length;
+    }
+
+    /** Returns true iff the file named NAME begins like a compiled map
+     *  file. */
+    static boolean isCompiled(String name) throws IOException {
+        try (FileInputStream inp = new FileInputStream(name)) {
+            byte[] head = new byte[4];
+            return inp.read(head) == 4
+                && ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /** Write me to the file named NAME. */
+    void write(String name) throws IOException {
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> index = new HashMap<>();
+        int[] locationIndex = new int[numLocations()];
+        for (int v = 1; v <= numLocations(); v += 1) {
+            locationIndex[v - 1] = intern(locationNames[v], strings, index);
+        }
+        int[] roadIndex = new int[numRoads()];
+        for (int e = 0; e < numRoads(); e += 1) {
+            roadIndex[e] = intern(roadNames[e], strings, index);
+        }
+        ArrayList<byte[]> encoded = new ArrayList<>();
+        for (String s : strings) {
+            encoded.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numLocations());
+            out.writeInt(numRoads());
+            out.writeInt(strings.size());
+            for (int v = 1; v <= numLocations() + 1; v += 1) {
+                out.writeInt(offsets[v]);
+            }
+            for (int w : targets) {
+                out.writeInt(w);
+            }
+            for (int k : locationIndex) {
+                out.writeInt(k);
+            }
+            for (int k : roadIndex) {
+                out.writeInt(k);
+            }
+            int end;
+            end = 0;
+            for (byte[] b : encoded) {
+                end += b.length;
+                out.writeInt(end);
+            }
+            for (int v = 1; v <= numLocations(); v += 1) {
+                out.writeDouble(x[v]);
+            }
+            for (int v = 1; v <= numLocations(); v += 1) {
+                out.writeDouble(y[v]);
+            }
+            for (double len : lengths) {
+                out.writeDouble(len);
+            }
+            for (Direction dir : directions) {
+                out.writeByte(dir.ordinal());
+            }
+            for (byte[] b : encoded) {
+                out.write(b);
+            }
+        }
+    }
+
+    /** Returns the compiled map in the file named NAME. */
+    static MapFile read(String name) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel chan = new FileInputStream(name).getChannel()) {
+            buf = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        }
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            error("%s is not a compiled map", name);
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            error("unsupported compiled map version %d", version);
+        }
+        int numLocations = buf.getInt(),
+            numRoads = buf.getInt(),
+            numStrings = buf.getInt();
+        if (numLocations < 0 || numRoads < 0 || numStrings < 0
+            || sectionsSize(numLocations, numRoads, numStrings)
+               > buf.remaining()) {
+            error("corrupt compiled map %s", name);
+        }
+        MapFile result = new MapFile(numLocations, numRoads);
+        int[] locationIndex = new int[numLocations];
+        int[] roadIndex = new int[numRoads];
+        int[] stringEnds = new int[numStrings];
+        byte[] directions = new byte[numRoads];
+        try {
+            buf.asIntBuffer().get(result.offsets, 1, numLocations + 1);
+            buf.position(buf.position() + 4 * (numLocations + 1));
+            buf.asIntBuffer().get(result.targets);
+            buf.position(buf.position() + 4 * numRoads);
+            buf.asIntBuffer().get(locationIndex);
+            buf.position(buf.position() + 4 * numLocations);
+            buf.asIntBuffer().get(roadIndex);
+            buf.position(buf.position() + 4 * numRoads);
+            buf.asIntBuffer().get(stringEnds);
+            buf.position(buf.position() + 4 * numStrings);
+            buf.asDoubleBuffer().get(result.x, 1, numLocations);
+            buf.position(buf.position() + 8 * numLocations);
+            buf.asDoubleBuffer().get(result.y, 1, numLocations);
+            buf.position(buf.position() + 8 * numLocations);
+            buf.asDoubleBuffer().get(result.lengths);
+            buf.position(buf.position() + 8 * numRoads);
+            buf.get(directions);
+
+            String[] strings = new String[numStrings];
+            int start;
+            start = 0;
+            int numBytes = numStrings == 0 ? 0 : stringEnds[numStrings - 1];
+            if (numBytes < 0 || numBytes > buf.remaining()) {
+                error("corrupt compiled map %s", name);
+            }
+            byte[] bytes = new byte[numBytes];
+            buf.get(bytes);
+            for (int k = 0; k < numStrings; k += 1) {
+                strings[k] = new String(bytes, start, stringEnds[k] - start,
+                                        StandardCharsets.UTF_8);
+                start = stringEnds[k];
+            }
+            Direction[] dirs = Direction.values();
+            for (int v = 1; v <= numLocations; v += 1) {
+                result.locationNames[v] = strings[locationIndex[v - 1]];
+            }
+            for (int e = 0; e < numRoads; e += 1) {
+                result.roadNames[e] = strings[roadIndex[e]];
+                result.directions[e] = dirs[directions[e]];
+            }
+        } catch (RuntimeException excp) {
+            error("corrupt compiled map %s", name);
+        }
+        return result;
+    }
+
+    /** Returns the number of bytes in the sections of a compiled map file
+     *  that follow the header, excluding the string bytes, for a map of
+     *  NUMLOCATIONS locations, NUMROADS roads, and NUMSTRINGS strings. */
+    private static long sectionsSize(int numLocations, int numRoads,
+                                     int numStrings) {
+        return 4L * (numLocations + 1L) + 4L * numRoads
+            + 4L * numLocations + 4L * numRoads + 4L * numStrings
+            + 8L * numLocations + 8L * numLocations + 8L * numRoads
+            + numRoads;
+    }
+
+    /** Returns the index of S in STRINGS, adding it to STRINGS and INDEX
+     *  (which maps strings to their indices) if needed. */
+    private static int intern(String s, ArrayList<String> strings,
+                              HashMap<String, Integer> index) {
+        Integer k = index.get(s);
+        if (k == null) {
+            k = strings.size();
+            strings.add(s);
+            index.put(s, k);
+        }
+        return k;
+    }
+
+    /** First word of a compiled map file ("TRIP" in ASCII). */
+    static final int MAGIC = 0x54524950;
+    /** Version of the compiled map format written by write. */
+    static final int VERSION = 1;
+    /** Number of bytes before the offsets section. */
+    private static final int HEADER_SIZE = 20;
+
+    /** Start of each location's roads in targets, indexed by location
+     *  (entries 0 and 1 are 0). */
+    final int[] offsets;
+    /** Destination location of each road. */
+    final int[] targets;
+    /** Coordinates of each location, indexed by location. */
+    final double[] x, y;
+    /** Name of each location, indexed by location. */
+    final String[] locationNames;
+    /** Length of each road. */
+    final double[] lengths;
+    /** Direction of each road. */
+    final Direction[] directions;
+    /** Name of each road. */
+    final String[] roadNames;
+}
@@ -0,0 +1,258 @@
+package trip;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/** A reader of the whitespace-separated tokens of a map file.  It provides
+ *  the subset of the Scanner interface that Trip.readMap uses, and
+ *  throws the same exceptions under the same conditions, but it reads the
+ *  file through a large NIO buffer, parses numbers directly from the
+ *  bytes, and interns the strings it returns, so that a name that occurs
+ *  many times (as road and location names do) is allocated only once.
+ *  @author Michael Chang
+ */
+class MapReader implements Closeable {
+
+    /** A reader for the file named NAME. */
+    MapReader(String name) throws IOException {
+        _in = new FileInputStream(name).getChannel();
+        _bytes = new byte[BUFFER_SIZE];
+        _buf = ByteBuffer.wrap(_bytes);
+        _token = new byte[INITIAL_TOKEN];
+        _names = new String[INITIAL_NAMES];
+        _nameBytes = new byte[INITIAL_NAMES][];
+        _hashes = new int[INITIAL_NAMES];
+    }
+
+    /** Returns true iff there is another token. */
+    boolean hasNext() throws IOException {
+        while (true) {
+            while (_pos < _limit) {
+                if ((_bytes[_pos] & 0xff) > ' ') {
+                    return true;
+                }
+                _pos += 1;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /** Returns the next token.  Equal tokens are returned as the same
+     *  String.  Throws NoSuchElementException if there are no more. */
+    String next() throws IOException {
+        readToken();
+        return intern();
+    }
+
+    /** Returns the next token as a double.  Throws NoSuchElementException
+     *  if there are no more tokens, and InputMismatchException if the
+     *  next one is not a number.  A token that is not a plain decimal
+     *  numeral (e.g., NaN, Infinity, or one with locale-specific
+     *  grouping) is handed to a Scanner, so that it means exactly what
+     *  it did when maps were read with one. */
+    double nextDouble() throws IOException {
+        readToken();
+        double x = parseDecimal();
+        if (Double.isNaN(x)) {
+            x = new Scanner(new String(_token, 0, _tokenLen,
+                                       StandardCharsets.UTF_8))
+                .nextDouble();
+        }
+        return x;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Refill _buf from the file.  Returns false at end of file. */
+    private boolean fill() throws IOException {
+        _buf.clear();
+        int n = _in.read(_buf);
+        _pos = 0;
+        _limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    /** Read the next token into _token.  Throws NoSuchElementException if
+     *  there is none. */
+    private void readToken() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        _tokenLen = 0;
+        while (true) {
+            while (_pos < _limit) {
+                byte c = _bytes[_pos];
+                if ((c & 0xff) <= ' ') {
+                    return;
+                }
+                if (_tokenLen == _token.length) {
+                    _token = Arrays.copyOf(_token, 2 * _tokenLen);
+                }
+                _token[_tokenLen] = c;
+                _tokenLen += 1;
+                _pos += 1;
+            }
+            if (!fill()) {
+                return;
+            }
+        }
+    }
+
+    /** Returns the value of _token as a plain decimal numeral, [-]DDD.DDD,
+     *  if it is one whose value can be computed exactly with one correctly
+     *  rounded division, and otherwise NaN. */
+    private double parseDecimal() {
+        int k;
+        k = 0;
+        boolean negative = _tokenLen > 0 && _token[0] == '-';
+        if (negative || (_tokenLen > 0 && _token[0] == '+')) {
+            k = 1;
+        }
+        long mantissa;
+        int digits, scale;
+        mantissa = 0;
+        digits = scale = 0;
+        boolean point = false;
+        for (; k < _tokenLen; k += 1) {
+            int c = _token[k];
+            if ('0' <= c && c <= '9') {
+                mantissa = 10 * mantissa + (c - '0');
+                digits += 1;
+                if (point) {
+                    scale += 1;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || digits > MAX_EXACT_DIGITS
+            || scale >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        double x = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -x : x;
+    }
+
+    /** Returns the String whose UTF-8 encoding is the current token,
+     *  creating and remembering it if it has not been seen before. */
+    private String intern() {
+        int h = 0;
+        for (int k = 0; k < _tokenLen; k += 1) {
+            h = 31 * h + _token[k];
+        }
+        int mask = _names.length - 1;
+        int i;
+        for (i = slot(h, mask); _names[i] != null; i = (i + 1) & mask) {
+            if (_hashes[i] == h && matches(_nameBytes[i])) {
+                return _names[i];
+            }
+        }
+        byte[] bytes = Arrays.copyOf(_token, _tokenLen);
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        _names[i] = name;
+        _nameBytes[i] = bytes;
+        _hashes[i] = h;
+        _numNames += 1;
+        if (2 * _numNames > _names.length) {
+            rehash();
+        }
+        return name;
+    }
+
+    /** Returns the home slot for a token with hash code H in an intern
+     *  table whose size is MASK + 1. */
+    private static int slot(int h, int mask) {
+        h *= 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns true iff BYTES is the same as the current token. */
+    private boolean matches(byte[] bytes) {
+        if (bytes.length != _tokenLen) {
+            return false;
+        }
+        for (int k = 0; k < _tokenLen; k += 1) {
+            if (bytes[k] != _token[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Double the size of the intern table. */
+    private void rehash() {
+        String[] names = _names;
+        byte[][] nameBytes = _nameBytes;
+        int[] hashes = _hashes;
+        _names = new String[2 * names.length];
+        _nameBytes = new byte[2 * names.length][];
+        _hashes = new int[2 * names.length];
+        int mask = _names.length - 1;
+        for (int k = 0; k < names.length; k += 1) {
+            if (names[k] != null) {
+                int i;
+                for (i = slot(hashes[k], mask); _names[i] != null;
+                     i = (i + 1) & mask) {
+                    continue;
+                }
+                _names[i] = names[k];
+                _nameBytes[i] = nameBytes[k];
+                _hashes[i] = hashes[k];
+            }
+        }
+    }
+
+    /** Size of the file buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Initial sizes of the token buffer and intern table. */
+    private static final int INITIAL_TOKEN = 64, INITIAL_NAMES = 1024;
+    /** Numerals with at most this many digits have exact double
+     *  mantissas. */
+    private static final int MAX_EXACT_DIGITS = 15;
+    /** Powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The file being read. */
+    private final FileChannel _in;
+    /** Buffered contents of the file: _bytes[_pos .. _limit - 1] are yet
+     *  to be read. */
+    private final byte[] _bytes;
+    /** Position of the next unread byte in _bytes, and the end of the
+     *  valid data there. */
+    private int _pos, _limit;
+    /** A buffer wrapping _bytes, for reading from _in. */
+    private final ByteBuffer _buf;
+    /** The current token is _token[0 .. _tokenLen - 1]. */
+    private byte[] _token;
+    /** Length of the current token. */
+    private int _tokenLen;
+    /** Open-addressed intern table of the distinct tokens returned by
+     *  next(), and their encodings. */
+    private String[] _names;
+    /** UTF-8 encodings of the entries of _names. */
+    private byte[][] _nameBytes;
+    /** Hash codes of the entries of _nameBytes. */
+    private int[] _hashes;
+    /** Number of entries in _names. */
+    private int _numNames;
+}
@@ -0,0 +1,193 @@
+package trip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The result of planning a trip: its starting location and its legs, in
+ *  order, each made of the numbered steps (roads merged as in the
+ *  directions) that lead to the next stop.  A Route is independent of
+ *  the output: render delivers it to any Directions (TextDirections
+ *  giving the usual text), and appendJson encodes it as one line of
+ *  JSON for programs that consume routes in bulk.  Routes are
+ *  immutable.
+ *  @author Michael Chang
+ */
+class Route {
+
+    /** A route from the location named FROM along LEGS, whose planning
+     *  settled SETTLED vertices. */
+    Route(String from, List<Leg> legs, long settled) {
+        _from = from;
+        _legs = Collections.unmodifiableList(new ArrayList<>(legs));
+        _settled = settled;
+        double length;
+        length = 0;
+        for (Leg leg : legs) {
+            length += leg.length();
+        }
+        _length = length;
+    }
+
+    /** Returns the name of the starting location. */
+    String from() {
+        return _from;
+    }
+
+    /** Returns the legs of the route, in order. */
+    List<Leg> legs() {
+        return _legs;
+    }
+
+    /** Returns the total length of the route, in miles. */
+    double length() {
+        return _length;
+    }
+
+    /** Returns the number of vertices settled by the searches that
+     *  planned the route (none for legs found in a route cache). */
+    long settledCount() {
+        return _settled;
+    }
+
+    /** Deliver me to OUT as directions, without flushing OUT. */
+    void render(Directions out) {
+        out.start(_from);
+        for (Leg leg : _legs) {
+            for (Directions.Step s : leg.steps()) {
+                out.step(s.seq, s.road, s.direction, s.length, s.to);
+            }
+        }
+    }
+
+    /** Append me to OUT as a single line of JSON, ending in a newline,
+     *  of the form
+     *      {"from":"A","length":3.5,"settled":12,"legs":[{"to":"D",
+     *       "length":3.5,"steps":[{"seq":1,"road":"Main",
+     *       "direction":"east","length":2.0},...]},...]}
+     *  (without the line breaks). */
+    void appendJson(StringBuilder out) {
+        out.append("{\"from\":");
+        appendString(out, _from);
+        out.append(",\"length\":").append(_length)
+            .append(",\"settled\":").append(_settled)
+            .append(",\"legs\":[");
+        for (int i = 0; i < _legs.size(); i += 1) {
+            Leg leg = _legs.get(i);
+            out.append(i == 0 ? "{\"to\":" : ",{\"to\":");
+            appendString(out, leg.to());
+            out.append(",\"length\":").append(leg.length())
+                .append(",\"steps\":[");
+            for (int k = 0; k < leg.steps().size(); k += 1) {
+                Directions.Step s = leg.steps().get(k);
+                out.append(k == 0 ? "{\"seq\":" : ",{\"seq\":").append(s.seq)
+                    .append(",\"road\":");
+                appendString(out, s.road);
+                out.append(",\"direction\":");
+                appendString(out, s.direction);
+                out.append(",\"length\":").append(s.length).append('}');
+            }
+            out.append("]}");
+        }
+        out.append("]}\n");
+    }
+
+    /** Append S to OUT as a JSON string literal. */
+    private static void appendString(StringBuilder out, String s) {
+        out.append('"');
+        for (int k = 0; k < s.length(); k += 1) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /** One leg of a route: the steps from one stop to the next. */
+    static class Leg {
+
+        /** A leg consisting of STEPS, the last of which ends it. */
+        Leg(List<Directions.Step> steps) {
+            _steps = Collections.unmodifiableList(new ArrayList<>(steps));
+            double length;
+            length = 0;
+            for (Directions.Step s : steps) {
+                length += s.length;
+            }
+            _length = length;
+        }
+
+        /** Returns the name of the location at which I end. */
+        String to() {
+            return _steps.get(_steps.size() - 1).to;
+        }
+
+        /** Returns my steps, in order. */
+        List<Directions.Step> steps() {
+            return _steps;
+        }
+
+        /** Returns my length, in miles. */
+        double length() {
+            return _length;
+        }
+
+        /** My steps. */
+        private final List<Directions.Step> _steps;
+        /** My total length. */
+        private final double _length;
+    }
+
+    /** Directions that collect a Route instead of delivering them. */
+    static class Builder implements Directions {
+
+        @Override
+        public void start(String from) {
+            _from = from;
+            _legs.clear();
+            _steps.clear();
+        }
+
+        @Override
+        public void step(int seq, String road, String direction,
+                         double length, String to) {
+            _steps.add(new Directions.Step(seq, road, direction, length,
+                                           to));
+            if (to != null) {
+                _legs.add(new Leg(_steps));
+                _steps.clear();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        /** Returns the route collected since the last call to start,
+         *  whose planning settled SETTLED vertices. */
+        Route build(long settled) {
+            return new Route(_from, _legs, settled);
+        }
+
+        /** The starting location. */
+        private String _from;
+        /** The completed legs. */
+        private final ArrayList<Leg> _legs = new ArrayList<>();
+        /** The steps of the leg in progress. */
+        private final ArrayList<Directions.Step> _steps = new ArrayList<>();
+    }
+
+    /** The starting location. */
+    private final String _from;
+    /** The legs. */
+    private final List<Leg> _legs;
+    /** The total length. */
+    private final double _length;
+    /** Vertices settled in planning. */
+    private final long _settled;
+}
@@ -0,0 +1,103 @@
+package trip;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A bounded cache of planned routes, each a list of vertices, keyed by
+ *  their starting and ending vertices.  When full, it evicts the route
+ *  least recently asked for.  Each lookup and insertion carries the
+ *  version of the map that the routes were planned on (the number of
+ *  the Trip.Conditions used); a new version discards all routes planned
+ *  on older ones, so that the cache never returns a route through a map
+ *  that has since changed, and a lookup on any version but the newest
+ *  finds nothing, so that a trip begun on an older version never mixes
+ *  in legs planned on a newer one.  Lookups and insertions may be made
+ *  from several threads at once.
+ *  @author Michael Chang
+ */
+class RouteCache {
+
+    /** A cache holding up to CAPACITY routes. */
+    RouteCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("cache must hold a route");
+        }
+        _capacity = capacity;
+        _routes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Long, List<Integer>> e) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Returns the vertices of the route from FROM to TO planned on
+     *  version VERSION of the map, from FROM to TO, or null if there is
+     *  none.  The list may not be modified. */
+    synchronized List<Integer> get(int from, int to, long version) {
+        checkVersion(version);
+        List<Integer> result =
+            version == _version ? _routes.get(key(from, to)) : null;
+        if (result == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return result;
+    }
+
+    /** Record the vertices PATH as the route from FROM to TO planned on
+     *  version VERSION of the map.  PATH is copied. */
+    synchronized void put(int from, int to, long version,
+                          List<Integer> path) {
+        checkVersion(version);
+        if (version == _version) {
+            _routes.put(key(from, to), List.copyOf(path));
+        }
+    }
+
+    /** Returns the number of routes held. */
+    synchronized int size() {
+        return _routes.size();
+    }
+
+    /** Returns the maximum number of routes held. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Returns the number of calls to get that found a route. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of calls to get that found no route. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Discard all routes if VERSION is newer than the version they were
+     *  planned on. */
+    private void checkVersion(long version) {
+        if (version > _version) {
+            _routes.clear();
+            _version = version;
+        }
+    }
+
+    /** Returns the key for the route from FROM to TO. */
+    private static long key(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    /** Maximum number of routes held. */
+    private final int _capacity;
+    /** The routes, in order from least to most recently used. */
+    private final LinkedHashMap<Long, List<Integer>> _routes;
+    /** Version of the map on which all routes in _routes were planned. */
+    private long _version;
+    /** Numbers of successful and unsuccessful lookups. */
+    private long _hits, _misses;
+}
@@ -0,0 +1,302 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static trip.Main.LISTSEP;
+import static trip.Main.error;
+
+/** A long-running trip planner that answers requests against one Trip,
+ *  whose map is read once and then shared by all requests.  Requests
+ *  arrive one per line, on the standard input or on any number of
+ *  connections to a local socket, each of which is served on its own
+ *  thread.  Each line is either a comma-separated list of locations (as
+ *  separated by Main.LISTSEP), which is answered with the directions that
+ *  makeTrip would print, or with "trip: " and an error message; or the
+ *  word "stats", which is answered with counts of requests,
+ *  percentiles of the time taken to answer them, and how trips are being
+ *  searched for (see Trip.searchMethod); or "close" or "open"
+ *  followed by a list of pairs of locations, which closes or reopens
+ *  the roads between them (see Trip.setRoadsOpen); or "traffic", a
+ *  congestion factor, and a list of pairs of locations, which sets the
+ *  congestion of the roads between them (see Trip.setCongestion).  The
+ *  last two are answered with nothing.  A request "nearest X Y K" is
+ *  answered with the names of the K locations nearest to (X, Y), one per
+ *  line.  Locations in trips may also be given as positions, @X:Y,
+ *  which stand for the nearest location.  Any request that fails,
+ *  including "close", "open", "traffic", or "nearest" with nothing
+ *  after it, is answered with "trip: " and an error message, and the
+ *  server goes on to the next.
+ *  Every answer ends with a line holding only END_OF_ANSWER, so that
+ *  clients can tell where it stops.
+ *  @author Michael Chang
+ */
+class Server {
+
+    /** A server answering requests with TRIP, whose map must have been
+     *  read. */
+    Server(Trip trip) {
+        _trip = trip;
+    }
+
+    /** Answer the requests on IN, in order, on OUT until IN is
+     *  exhausted. */
+    void serve(BufferedReader in, PrintStream out) throws IOException {
+        while (true) {
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+            line = line.trim();
+            if (!line.isEmpty()) {
+                out.print(answer(line));
+                out.println(END_OF_ANSWER);
+                out.flush();
+            }
+        }
+    }
+
+    /** Accept connections on SOCKET and answer the requests on each, until
+     *  SOCKET is closed. */
+    void serve(ServerSocket socket) throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            while (true) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException excp) {
+                    if (socket.isClosed()) {
+                        return;
+                    }
+                    throw excp;
+                }
+                connections.execute(() -> converse(client));
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    /** Answer the requests sent on CLIENT until it closes. */
+    private void converse(Socket client) {
+        try (Socket s = client;
+             BufferedReader in =
+                 new BufferedReader(new InputStreamReader(
+                     s.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(s.getOutputStream(), false,
+                                               StandardCharsets.UTF_8)) {
+            serve(in, out);
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Returns the answer to the request LINE, which is not empty.  A
+     *  request that fails for any reason is answered with "trip: " and a
+     *  message, so that one bad request cannot stop the server. */
+    String answer(String line) {
+        if (line.equals("stats")) {
+            return stats();
+        }
+        String[] words = line.split("\\s+", 2);
+        String args = words.length == 2 ? words[1] : null;
+        try {
+            switch (words[0]) {
+            case "close":
+            case "open":
+                return changeRoads(args, words[0].equals("open"));
+            case "traffic":
+                return changeTraffic(args);
+            case "nearest":
+                return nearest(args);
+            default:
+                break;
+            }
+        } catch (RuntimeException excp) {
+            return failure(excp);
+        }
+        long start = System.nanoTime();
+        StringBuilder text = new StringBuilder();
+        String result;
+        boolean ok;
+        try {
+            _trip.makeTrip(Arrays.asList(LISTSEP.split(line)),
+                           new TextDirections(text));
+            result = text.toString();
+            ok = true;
+        } catch (RuntimeException excp) {
+            result = failure(excp);
+            ok = false;
+        }
+        _latencies.record(System.nanoTime() - start, ok);
+        return result;
+    }
+
+    /** Returns the answer to a request that failed with EXCP: its message,
+     *  if it is a user error (an IllegalArgumentException), and otherwise
+     *  a description of the unexpected exception. */
+    private static String failure(RuntimeException excp) {
+        if (excp instanceof IllegalArgumentException) {
+            return String.format("trip: %s%n", excp.getMessage());
+        }
+        return String.format("trip: internal error: %s%n", excp);
+    }
+
+    /** Returns the answer to a request to open the roads between the
+     *  pairs of locations in the list ENDS if OPEN, and otherwise to close
+     *  them.  ENDS is null if the request gave none. */
+    private String changeRoads(String ends, boolean open) {
+        if (ends == null) {
+            error("usage: %s LOCATION, LOCATION, ...",
+                  open ? "open" : "close");
+        }
+        _trip.setRoadsOpen(Arrays.asList(LISTSEP.split(ends)), open);
+        return "";
+    }
+
+    /** Returns the answer to a request to set the congestion of roads,
+     *  where REQUEST is the factor followed by the list of pairs of
+     *  locations, or null if the request gave neither. */
+    private String changeTraffic(String request) {
+        if (request == null) {
+            error("usage: traffic FACTOR LOCATION, LOCATION, ...");
+        }
+        String[] args = request.split("\\s+", 2);
+        double factor;
+        factor = 0;
+        try {
+            factor = Double.parseDouble(args[0]);
+        } catch (NumberFormatException excp) {
+            error("bad congestion factor: %s", args[0]);
+        }
+        if (args.length < 2) {
+            error("no roads given");
+        }
+        _trip.setCongestion(Arrays.asList(LISTSEP.split(args[1])), factor);
+        return "";
+    }
+
+    /** Returns the answer to a request for the locations nearest a point,
+     *  where REQUEST is its coordinates and the number of locations, or
+     *  null if the request gave none. */
+    private String nearest(String request) {
+        String[] args =
+            request == null ? new String[0] : request.split("\\s+");
+        StringBuilder result = new StringBuilder();
+        if (args.length != 3) {
+            error("nearest needs a position and a count");
+        }
+        double x, y;
+        int k;
+        x = y = 0;
+        k = 0;
+        try {
+            x = Double.parseDouble(args[0]);
+            y = Double.parseDouble(args[1]);
+            k = Integer.parseInt(args[2]);
+        } catch (NumberFormatException excp) {
+            error("bad position or count: %s", request);
+        }
+        if (k < 0) {
+            error("negative count: %d", k);
+        }
+        for (String name : _trip.nearestLocations(x, y, k)) {
+            result.append(name).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    /** Returns the answer to a "stats" request. */
+    String stats() {
+        return String.format("requests %d%nerrors %d%n"
+                             + "latency p50 %.3f ms%nlatency p90 %.3f ms%n"
+                             + "latency p99 %.3f ms%nlatency max %.3f ms%n"
+                             + "cache hits %d misses %d%nsearch %s%n",
+                             _latencies.count(), _latencies.errors(),
+                             _latencies.percentile(0.50) / 1e6,
+                             _latencies.percentile(0.90) / 1e6,
+                             _latencies.percentile(0.99) / 1e6,
+                             _latencies.percentile(1.0) / 1e6,
+                             _trip.cacheHits(), _trip.cacheMisses(),
+                             _trip.searchMethod());
+    }
+
+    /** The times taken by the most recent requests, kept in a ring of
+     *  fixed size so that percentiles reflect current behavior and cost a
+     *  bounded amount to compute.  Any number of threads may record
+     *  times at once. */
+    static class Latencies {
+
+        /** A record of the times of the last SIZE requests. */
+        Latencies(int size) {
+            _times = new long[size];
+        }
+
+        /** Record a request that took NANOS nanoseconds, and that succeeded
+         *  iff OK. */
+        synchronized void record(long nanos, boolean ok) {
+            _times[(int) (_count % _times.length)] = nanos;
+            _count += 1;
+            if (!ok) {
+                _errors += 1;
+            }
+        }
+
+        /** Returns the number of requests recorded. */
+        synchronized long count() {
+            return _count;
+        }
+
+        /** Returns the number of failed requests recorded. */
+        synchronized long errors() {
+            return _errors;
+        }
+
+        /** Returns the smallest time, in nanoseconds, no less than the
+         *  fraction P of the recent times, or 0 if there are none. */
+        long percentile(double p) {
+            long[] times;
+            synchronized (this) {
+                times = Arrays.copyOf(_times,
+                                      (int) Math.min(_count, _times.length));
+            }
+            if (times.length == 0) {
+                return 0;
+            }
+            Arrays.sort(times);
+            int k = (int) Math.ceil(p * times.length) - 1;
+            return times[Math.max(0, Math.min(k, times.length - 1))];
+        }
+
+        /** The recent times, in nanoseconds, in a ring. */
+        private final long[] _times;
+        /** Total number of requests recorded, and of those that failed. */
+        private long _count, _errors;
+    }
+
+    /** Line that ends every answer. */
+    static final String END_OF_ANSWER = ".";
+    /** Number of recent requests whose times are kept for percentiles. */
+    private static final int SAMPLES = 10000;
+
+    /** Plans the trips requested. */
+    private final Trip _trip;
+    /** Times taken by recent trip requests. */
+    private final Latencies _latencies = new Latencies(SAMPLES);
+}
@@ -0,0 +1,290 @@
+package trip;
+
+import java.util.Arrays;
+
+/** An index of points in the plane, each identified by a positive int
+ *  (in a Trip, the vertex of a Location), that finds the points nearest
+ *  to a given position, or within a given distance of it, without
+ *  examining them all.  It is a k-d tree kept in flat arrays: the points
+ *  of each subtree occupy a contiguous range of the arrays, with the
+ *  median of the range (by x at even depths, by y at odd ones) in the
+ *  middle, the points before it no greater in that coordinate, and
+ *  those after it no less.  The tree is built once, in O(N log N) time,
+ *  and then never changes, so any number of threads may query it at
+ *  once.
+ *  @author Michael Chang
+ */
+class SpatialIndex {
+
+    /** An index of the points (XS[K], YS[K]) identified by IDS[K], for
+     *  0 <= K < IDS.length.  The arrays are copied. */
+    SpatialIndex(int[] ids, double[] xs, double[] ys) {
+        _ids = ids.clone();
+        _x = xs.clone();
+        _y = ys.clone();
+        build(0, _ids.length, true);
+    }
+
+    /** Returns the number of points in me. */
+    int size() {
+        return _ids.length;
+    }
+
+    /** Returns the point nearest to (X, Y), or 0 if I am empty.  Of
+     *  points equally near, returns the one with the smallest id. */
+    int nearest(double x, double y) {
+        int[] result = nearest(x, y, 1);
+        return result.length == 0 ? 0 : result[0];
+    }
+
+    /** Returns the K points nearest to (X, Y) (or all my points, if I
+     *  have fewer), from nearest to farthest, with points equally near
+     *  ordered by id. */
+    int[] nearest(double x, double y, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("negative point count");
+        }
+        Found found = new Found(Math.min(k, _ids.length),
+                                Double.POSITIVE_INFINITY);
+        if (found.capacity() > 0) {
+            search(0, _ids.length, true, x, y, found);
+        }
+        return found.sorted();
+    }
+
+    /** Returns the points no farther than R from (X, Y), from nearest to
+     *  farthest, with points equally near ordered by id. */
+    int[] within(double x, double y, double r) {
+        Found found = new Found(-1, r * r);
+        if (r >= 0) {
+            search(0, _ids.length, true, x, y, found);
+        }
+        return found.sorted();
+    }
+
+    /** Arrange the points in the range [LO .. HI - 1] of my arrays as a
+     *  subtree split by x iff BYX. */
+    private void build(int lo, int hi, boolean byX) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi, mid, byX);
+        build(lo, mid, !byX);
+        build(mid + 1, hi, !byX);
+    }
+
+    /** Rearrange the points in [LO .. HI - 1] so that the point at K is
+     *  the one that would be there if they were sorted by x (if BYX) or
+     *  y, with no greater values before it and no smaller ones after. */
+    private void select(int lo, int hi, int k, boolean byX) {
+        double[] c = byX ? _x : _y;
+        while (hi - lo > 1) {
+            double pivot = c[(lo + hi) >>> 1];
+            int i = lo, j = hi - 1;
+            while (i <= j) {
+                while (c[i] < pivot) {
+                    i += 1;
+                }
+                while (c[j] > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j + 1;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Exchange the points at I and J. */
+    private void swap(int i, int j) {
+        int id = _ids[i];
+        _ids[i] = _ids[j];
+        _ids[j] = id;
+        double t = _x[i];
+        _x[i] = _x[j];
+        _x[j] = t;
+        t = _y[i];
+        _y[i] = _y[j];
+        _y[j] = t;
+    }
+
+    /** Add to FOUND the points in the subtree [LO .. HI - 1], split by x
+     *  iff BYX, that belong among the points nearest (X, Y), skipping
+     *  any part of the subtree that cannot contain such a point. */
+    private void search(int lo, int hi, boolean byX, double x, double y,
+                        Found found) {
+        while (hi > lo) {
+            int mid = (lo + hi) >>> 1;
+            double dx = _x[mid] - x, dy = _y[mid] - y;
+            found.offer(_ids[mid], dx * dx + dy * dy);
+            double side = byX ? x - _x[mid] : y - _y[mid];
+            int nearLo, nearHi, farLo, farHi;
+            if (side < 0) {
+                nearLo = lo;
+                nearHi = mid;
+                farLo = mid + 1;
+                farHi = hi;
+            } else {
+                nearLo = mid + 1;
+                nearHi = hi;
+                farLo = lo;
+                farHi = mid;
+            }
+            search(nearLo, nearHi, !byX, x, y, found);
+            if (side * side > found.bound()) {
+                return;
+            }
+            lo = farLo;
+            hi = farHi;
+            byX = !byX;
+        }
+    }
+
+    /** The points found by a search, with their squared distances.  If it
+     *  has a capacity, it keeps only that many nearest points, as a
+     *  max-heap by distance (and then id) so that the farthest is
+     *  replaced first; otherwise, it keeps every point within its
+     *  bound. */
+    private static class Found {
+
+        /** A collection of up to CAPACITY points (any number, if CAPACITY
+         *  is negative) whose squared distances are at most BOUND. */
+        Found(int capacity, double bound) {
+            _capacity = capacity;
+            _bound = bound;
+            int n = capacity < 0 ? INITIAL_SIZE : capacity;
+            _ids = new int[n];
+            _dists = new double[n];
+        }
+
+        /** Returns my capacity, or -1 if I have none. */
+        int capacity() {
+            return _capacity;
+        }
+
+        /** Returns the squared distance beyond which points need not be
+         *  offered. */
+        double bound() {
+            if (_capacity < 0 || _size < _capacity) {
+                return _bound;
+            }
+            return _dists[0];
+        }
+
+        /** Consider the point ID at squared distance DIST. */
+        void offer(int id, double dist) {
+            if (dist > _bound) {
+                return;
+            }
+            if (_capacity < 0) {
+                if (_size == _ids.length) {
+                    _ids = Arrays.copyOf(_ids, 2 * _size);
+                    _dists = Arrays.copyOf(_dists, 2 * _size);
+                }
+                _ids[_size] = id;
+                _dists[_size] = dist;
+                _size += 1;
+            } else if (_size < _capacity) {
+                _ids[_size] = id;
+                _dists[_size] = dist;
+                _size += 1;
+                siftUp(_size - 1);
+            } else if (farther(0, id, dist)) {
+                _ids[0] = id;
+                _dists[0] = dist;
+                siftDown(0);
+            }
+        }
+
+        /** Returns the ids of my points, from nearest to farthest, with
+         *  points equally near ordered by id. */
+        int[] sorted() {
+            Integer[] order = new Integer[_size];
+            for (int k = 0; k < _size; k += 1) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int c = Double.compare(_dists[a], _dists[b]);
+                return c != 0 ? c : Integer.compare(_ids[a], _ids[b]);
+            });
+            int[] result = new int[_size];
+            for (int k = 0; k < _size; k += 1) {
+                result[k] = _ids[order[k]];
+            }
+            return result;
+        }
+
+        /** Returns true iff my point at K is farther than the point ID at
+         *  squared distance DIST, or as far with a larger id. */
+        private boolean farther(int k, int id, double dist) {
+            return _dists[k] > dist || (_dists[k] == dist && _ids[k] > id);
+        }
+
+        /** Restore heap order by moving my point at K up. */
+        private void siftUp(int k) {
+            while (k > 0) {
+                int parent = (k - 1) / 2;
+                if (!farther(k, _ids[parent], _dists[parent])) {
+                    return;
+                }
+                exchange(k, parent);
+                k = parent;
+            }
+        }
+
+        /** Restore heap order by moving my point at K down. */
+        private void siftDown(int k) {
+            while (2 * k + 1 < _size) {
+                int child = 2 * k + 1;
+                if (child + 1 < _size
+                    && farther(child + 1, _ids[child], _dists[child])) {
+                    child += 1;
+                }
+                if (!farther(child, _ids[k], _dists[k])) {
+                    return;
+                }
+                exchange(k, child);
+                k = child;
+            }
+        }
+
+        /** Exchange my points at I and J. */
+        private void exchange(int i, int j) {
+            int id = _ids[i];
+            _ids[i] = _ids[j];
+            _ids[j] = id;
+            double d = _dists[i];
+            _dists[i] = _dists[j];
+            _dists[j] = d;
+        }
+
+        /** Initial size of the arrays of an unbounded collection. */
+        private static final int INITIAL_SIZE = 16;
+
+        /** Maximum number of points kept, or -1 for no maximum. */
+        private final int _capacity;
+        /** Largest squared distance of a point kept. */
+        private final double _bound;
+        /** The ids of the points kept. */
+        private int[] _ids;
+        /** The squared distances of the points in _ids. */
+        private double[] _dists;
+        /** Number of points kept. */
+        private int _size;
+    }
+
+    /** The ids of the points, in tree order. */
+    private final int[] _ids;
+    /** The coordinates of the points in _ids. */
+    private final double[] _x, _y;
+}
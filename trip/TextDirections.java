@@ -0,0 +1,139 @@
+package trip;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.text.DecimalFormatSymbols;
+
+import java.util.Locale;
+
+import static trip.Main.error;
+
+/** Directions written as text in the format of the project
+ *  specification, for example
+ *      From Berkeley:
+ *
+ *      1. Take University_Ave west for 0.1 miles.
+ *      2. Take I-80 west for 8.4 miles to San_Francisco.
+ *  Each line is assembled in a reusable buffer, with distances formatted
+ *  by hand rather than by a format string, and then either appended to a
+ *  StringBuilder or written to a Writer, which is flushed only when the
+ *  directions are.  Lines end with the system line separator, as %n
+ *  does, so that the text is the same as printf would produce.
+ *  @author Michael Chang
+ */
+class TextDirections implements Directions {
+
+    /** Directions appended to OUT. */
+    TextDirections(StringBuilder out) {
+        _builder = out;
+        _writer = null;
+    }
+
+    /** Directions written to OUT. */
+    TextDirections(Writer out) {
+        _builder = null;
+        _writer = out;
+    }
+
+    @Override
+    public void start(String from) {
+        _line.setLength(0);
+        _line.append("From ").append(from).append(':').append(NEWLINE)
+            .append(NEWLINE);
+        emit();
+    }
+
+    @Override
+    public void step(int seq, String road, String direction, double length,
+                     String to) {
+        _line.setLength(0);
+        _line.append(seq).append(". Take ").append(road).append(' ')
+            .append(direction).append(" for ");
+        appendTenths(_line, length);
+        _line.append(" miles");
+        if (to != null) {
+            _line.append(" to ").append(to);
+        }
+        _line.append('.').append(NEWLINE);
+        emit();
+    }
+
+    @Override
+    public void flush() {
+        if (_writer != null) {
+            try {
+                _writer.flush();
+            } catch (IOException excp) {
+                error(excp.getMessage());
+            }
+        }
+    }
+
+    /** Append X to OUT rounded to one decimal place, exactly as
+     *  String.format("%.1f", X) would.  Format rounds the shortest decimal
+     *  numeral for X half up, which only differs from rounding X * 10
+     *  itself when X * 10 is within rounding error of a half; those
+     *  cases, negative numbers (including -0.0), and those outside the
+     *  range of exact long arithmetic are left to format. */
+    static void appendTenths(StringBuilder out, double x) {
+        double tenths = x * 10;
+        if (!(0 <= tenths && tenths < MAX_FAST)
+            || Math.copySign(1.0, x) < 0) {
+            out.append(String.format("%.1f", x));
+            return;
+        }
+        long whole = (long) tenths;
+        double frac = tenths - whole;
+        if (Math.abs(frac - 0.5) < TIE_BAND) {
+            out.append(String.format("%.1f", x));
+            return;
+        }
+        if (frac > 0.5) {
+            whole += 1;
+        }
+        out.append(whole / 10).append(POINT).append((char) ('0' + whole % 10));
+    }
+
+    /** Deliver the contents of _line. */
+    private void emit() {
+        if (_builder != null) {
+            _builder.append(_line);
+            return;
+        }
+        int n = _line.length();
+        if (n > _chars.length) {
+            _chars = new char[Math.max(n, 2 * _chars.length)];
+        }
+        _line.getChars(0, n, _chars, 0);
+        try {
+            _writer.write(_chars, 0, n);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** The line separator used by %n. */
+    private static final String NEWLINE = System.lineSeparator();
+    /** The decimal point used by format. */
+    private static final char POINT =
+        DecimalFormatSymbols.getInstance(Locale.getDefault(
+            Locale.Category.FORMAT)).getDecimalSeparator();
+    /** Multiples of 0.1 at or above which appendTenths defers to
+     *  format. */
+    private static final double MAX_FAST = 1e12;
+    /** Fractions of a tenth this close to a half are rounded by
+     *  format. */
+    private static final double TIE_BAND = 1e-4;
+    /** Initial size of _chars. */
+    private static final int INITIAL_CHARS = 128;
+
+    /** Destination of the text, if it is a StringBuilder, or null. */
+    private final StringBuilder _builder;
+    /** Destination of the text, if it is a Writer, or null. */
+    private final Writer _writer;
+    /** The line being assembled. */
+    private final StringBuilder _line = new StringBuilder();
+    /** Buffer for copying _line to _writer. */
+    private char[] _chars = new char[INITIAL_CHARS];
+}
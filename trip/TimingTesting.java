@@ -0,0 +1,508 @@
+package trip;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+/** Timing benchmarks for the trip package.  These are not unit tests, and
+ *  are not run by UnitTest.  Run them by hand with
+ *      java -cp .. trip.TimingTesting
+ *  Benchmarks over a range of sizes print one line per problem size, so
+ *  that scaling can be read off directly: time per entry should stay
+ *  roughly constant as the size doubles.
+ *  @author Michael Chang
+ */
+public class TimingTesting {
+
+    /** Run all benchmarks. */
+    public static void main(String... ignored) throws IOException {
+        timeReadMap();
+        timeLargeLoad(1000);
+        timeMultiLeg(300, 50);
+        timeLandmarks(300, 10, 8);
+        timeRouteCache(300, 2000, 50);
+        timeBatch(200, 2000);
+        timeDirections(200, 500);
+        timeNearest(100000);
+    }
+
+    /** Time Trip.readMap on square grid maps of doubling size. */
+    static void timeReadMap() throws IOException {
+        System.out.printf("readMap%n%10s %10s %10s %12s%n",
+                          "locations", "roads", "msec", "usec/entry");
+        for (int side = 64; side <= 512; side *= 2) {
+            File map = File.createTempFile("trip", ".map");
+            map.deleteOnExit();
+            int entries = writeGridMap(map, side, new Random(side));
+            long best = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                long start = System.nanoTime();
+                new Trip().readMap(map.getPath());
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%10d %10d %10.1f %12.3f%n",
+                              side * side, entries - side * side,
+                              best / 1e6, best / 1e3 / entries);
+            map.delete();
+        }
+    }
+
+    /** Time tokenizing a SIDE x SIDE grid map with Scanner (as readMap
+     *  once did) and with MapReader, and then time a full readMap of the
+     *  map and of its compiled form. */
+    static void timeLargeLoad(int side) throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        int entries = writeGridMap(map, side, new Random(side));
+        System.out.printf("%nload of %d locations, %d entries (%.1f MB)%n",
+                          side * side, entries, map.length() / 1e6);
+
+        long start = System.nanoTime();
+        double sum;
+        sum = 0;
+        try (Scanner inp = new Scanner(new FileReader(map))) {
+            while (inp.hasNext()) {
+                if (inp.next().equals("L")) {
+                    inp.next();
+                    sum += inp.nextDouble() + inp.nextDouble();
+                } else {
+                    inp.next();
+                    inp.next();
+                    sum += inp.nextDouble();
+                    inp.next();
+                    inp.next();
+                }
+            }
+        }
+        double scanner = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        double sum2;
+        sum2 = 0;
+        try (MapReader inp = new MapReader(map.getPath())) {
+            while (inp.hasNext()) {
+                if (inp.next().equals("L")) {
+                    inp.next();
+                    sum2 += inp.nextDouble() + inp.nextDouble();
+                } else {
+                    inp.next();
+                    inp.next();
+                    sum2 += inp.nextDouble();
+                    inp.next();
+                    inp.next();
+                }
+            }
+        }
+        double reader = (System.nanoTime() - start) / 1e6;
+        assert sum == sum2;
+
+        start = System.nanoTime();
+        new Trip().readMap(map.getPath());
+        double full = (System.nanoTime() - start) / 1e6;
+
+        File compiled = File.createTempFile("trip", ".bin");
+        compiled.deleteOnExit();
+        Trip trip = new Trip();
+        trip.readMap(map.getPath());
+        trip.compileMap(compiled.getPath());
+        start = System.nanoTime();
+        new Trip().readMap(compiled.getPath());
+        double binary = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-24s %10.1f msec%n", "Scanner tokens", scanner);
+        System.out.printf("%-24s %10.1f msec%n", "MapReader tokens", reader);
+        System.out.printf("%-24s %10.1f msec%n", "readMap", full);
+        System.out.printf("%-24s %10.1f msec (%.1f MB)%n", "readMap compiled",
+                          binary, compiled.length() / 1e6);
+        map.delete();
+        compiled.delete();
+    }
+
+    /** Time a trip through STOPS random locations of a SIDE x SIDE grid
+     *  map, planning its legs on one thread and on as many threads as there
+     *  are processors. */
+    static void timeMultiLeg(int side, int stops) throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        writeGridMap(map, side, new Random(side));
+        Random rand = new Random(stops);
+        ArrayList<String> dests = new ArrayList<>();
+        for (int k = 0; k < stops; k += 1) {
+            dests.add(String.format("G%d_%d", rand.nextInt(side),
+                                    rand.nextInt(side)));
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%n%d-stop trip on %d locations%n", stops,
+                          side * side);
+        PrintStream out = System.out;
+        int[] counts =
+            threads == 1 ? new int[] { 1 } : new int[] { 1, threads };
+        for (int n : counts) {
+            Trip trip = new Trip(n);
+            trip.readMap(map.getPath());
+            long best = Long.MAX_VALUE;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (int trial = 0; trial < TRIALS; trial += 1) {
+                    long start = System.nanoTime();
+                    trip.makeTrip(dests);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            } finally {
+                System.setOut(out);
+            }
+            System.out.printf("%3d thread(s) %10.1f msec%n", n, best / 1e6);
+        }
+        map.delete();
+    }
+
+    /** Report the number of vertices settled by each of QUERIES random
+     *  trips on a SIDE x SIDE grid map, and the total time they take,
+     *  using straight-line distance estimates, using K landmarks as well,
+     *  and using landmarks with bidirectional search.  Also time computing
+     *  the landmarks and reading them back from a file. */
+    static void timeLandmarks(int side, int queries, int k)
+        throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        File landmarks = new File(map.getPath() + Trip.LANDMARK_SUFFIX);
+        landmarks.deleteOnExit();
+        writeGridMap(map, side, new Random(side));
+        Trip plain = new Trip(1);
+        plain.readMap(map.getPath());
+        long start = System.nanoTime();
+        plain.computeLandmarks(k);
+        double compute = (System.nanoTime() - start) / 1e6;
+        plain.writeLandmarks(landmarks.getPath());
+        Trip alt = new Trip(1);
+        start = System.nanoTime();
+        alt.readMap(map.getPath());
+        double read = (System.nanoTime() - start) / 1e6;
+        Trip bidir = new Trip(1);
+        bidir.readMap(map.getPath());
+        bidir.setBidirectional(true);
+        landmarks.delete();
+        plain = new Trip(1);
+        plain.readMap(map.getPath());
+
+        System.out.printf("%n%d landmarks on %d locations: computed in %.1f"
+                          + " msec, map and landmarks read in %.1f msec%n",
+                          k, side * side, compute, read);
+        System.out.printf("%6s %12s %12s %12s%n", "query", "euclidean",
+                          "landmarks", "bidir+lm");
+        Trip[] trips = { plain, alt, bidir };
+        double[] times = new double[trips.length];
+        Random rand = new Random(queries);
+        PrintStream out = System.out;
+        for (int q = 1; q <= queries; q += 1) {
+            List<String> dests =
+                Arrays.asList(String.format("G%d_%d", rand.nextInt(side),
+                                            rand.nextInt(side)),
+                              String.format("G%d_%d", rand.nextInt(side),
+                                            rand.nextInt(side)));
+            long[] settled = new long[trips.length];
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (int t = 0; t < trips.length; t += 1) {
+                    long before = trips[t].settledCount();
+                    start = System.nanoTime();
+                    trips[t].makeTrip(dests);
+                    times[t] += (System.nanoTime() - start) / 1e6;
+                    settled[t] = trips[t].settledCount() - before;
+                }
+            } finally {
+                System.setOut(out);
+            }
+            System.out.printf("%6d %12d %12d %12d%n", q, settled[0],
+                              settled[1], settled[2]);
+        }
+        System.out.printf("%6s %12.1f %12.1f %12.1f%n", "msec", times[0],
+                          times[1], times[2]);
+        map.delete();
+    }
+
+    /** Time QUERIES two-stop trips on a SIDE x SIDE grid map, drawn from
+     *  only PAIRS distinct pairs of locations, without and with a route
+     *  cache large enough to hold them all. */
+    static void timeRouteCache(int side, int queries, int pairs)
+        throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        writeGridMap(map, side, new Random(side));
+        Random rand = new Random(pairs);
+        ArrayList<List<String>> popular = new ArrayList<>();
+        for (int k = 0; k < pairs; k += 1) {
+            popular.add(Arrays.asList(String.format("G%d_%d",
+                                                    rand.nextInt(side),
+                                                    rand.nextInt(side)),
+                                      String.format("G%d_%d",
+                                                    rand.nextInt(side),
+                                                    rand.nextInt(side))));
+        }
+        System.out.printf("%n%d trips among %d pairs on %d locations%n",
+                          queries, pairs, side * side);
+        PrintStream out = System.out;
+        for (int size = 0; size <= pairs; size += pairs) {
+            Trip trip = new Trip(1);
+            trip.readMap(map.getPath());
+            trip.setCacheSize(size);
+            long start = System.nanoTime();
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (int q = 0; q < queries; q += 1) {
+                    trip.makeTrip(popular.get(rand.nextInt(pairs)));
+                }
+            } finally {
+                System.setOut(out);
+            }
+            System.out.printf("cache of %4d %10.1f msec, %d hits, %d misses%n",
+                              size, (System.nanoTime() - start) / 1e6,
+                              trip.cacheHits(), trip.cacheMisses());
+        }
+        map.delete();
+    }
+
+    /** Time TRIPS random two-stop trips on a SIDE x SIDE grid map, planned
+     *  one after another with makeTrip, and as a Batch on as many threads
+     *  as there are processors. */
+    static void timeBatch(int side, int trips) throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        writeGridMap(map, side, new Random(side));
+        Random rand = new Random(trips);
+        StringBuilder requests = new StringBuilder();
+        ArrayList<List<String>> dests = new ArrayList<>();
+        for (int k = 0; k < trips; k += 1) {
+            String from = String.format("G%d_%d", rand.nextInt(side),
+                                        rand.nextInt(side)),
+                to = String.format("G%d_%d", rand.nextInt(side),
+                                   rand.nextInt(side));
+            if (from.equals(to)) {
+                k -= 1;
+                continue;
+            }
+            dests.add(Arrays.asList(from, to));
+            requests.append(from).append(", ").append(to).append('\n');
+        }
+        Trip trip = new Trip(1);
+        trip.readMap(map.getPath());
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%n%d trips on %d locations%n", trips,
+                          side * side);
+
+        PrintStream out = System.out;
+        long start = System.nanoTime();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (List<String> trip1 : dests) {
+                trip.makeTrip(trip1);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        System.out.printf("%-24s %10.1f msec%n", "makeTrip",
+                          (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        new Batch(trip, threads)
+            .run(new BufferedReader(new StringReader(requests.toString())),
+                 Writer.nullWriter(),
+                 new PrintStream(OutputStream.nullOutputStream()));
+        System.out.printf("%-24s %10.1f msec%n",
+                          String.format("batch, %d thread(s)", threads),
+                          (System.nanoTime() - start) / 1e6);
+        map.delete();
+    }
+
+    /** Time writing the directions for TRIPS random trips on a SIDE x SIDE
+     *  grid map, once planned: with printf on an autoflushing PrintStream
+     *  (as reportSegment once did), and with TextDirections on a
+     *  BufferedWriter. */
+    static void timeDirections(int side, int trips) throws IOException {
+        File map = File.createTempFile("trip", ".map");
+        map.deleteOnExit();
+        writeGridMap(map, side, new Random(side));
+        Trip trip = new Trip(1);
+        trip.readMap(map.getPath());
+        Random rand = new Random(trips);
+        ArrayList<Route> planned = new ArrayList<>();
+        int steps;
+        steps = 0;
+        while (planned.size() < trips) {
+            List<String> dests =
+                Arrays.asList(String.format("G%d_%d", rand.nextInt(side),
+                                            rand.nextInt(side)),
+                              String.format("G%d_%d", rand.nextInt(side),
+                                            rand.nextInt(side)));
+            if (!dests.get(0).equals(dests.get(1))) {
+                Route route = trip.planTrip(dests);
+                planned.add(route);
+                for (Route.Leg leg : route.legs()) {
+                    steps += leg.steps().size();
+                }
+            }
+        }
+        System.out.printf("%ndirections for %d trips, %d steps%n", trips,
+                          steps);
+        for (int mode = 0; mode < 2; mode += 1) {
+            long best = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                long start = System.nanoTime();
+                if (mode == 0) {
+                    PrintStream out =
+                        new PrintStream(OutputStream.nullOutputStream(),
+                                        true);
+                    for (Route r : planned) {
+                        out.printf("From %s:%n%n", r.from());
+                        for (Directions.Step s : steps(r)) {
+                            if (s.to == null) {
+                                out.printf("%d. Take %s %s for %.1f miles.%n",
+                                           s.seq, s.road, s.direction,
+                                           s.length);
+                            } else {
+                                out.printf("%d. Take %s %s for %.1f miles"
+                                           + " to %s.%n", s.seq, s.road,
+                                           s.direction, s.length, s.to);
+                            }
+                        }
+                    }
+                } else {
+                    TextDirections out =
+                        new TextDirections(new BufferedWriter(
+                                               Writer.nullWriter()));
+                    for (Route r : planned) {
+                        r.render(out);
+                    }
+                    out.flush();
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-24s %10.1f msec%n",
+                              mode == 0 ? "printf" : "TextDirections",
+                              best / 1e6);
+        }
+        map.delete();
+    }
+
+    /** Time finding the location nearest each of 10000 random points
+     *  among up to N random locations, with a SpatialIndex and by
+     *  examining every location. */
+    static void timeNearest(int n) {
+        System.out.printf("%nnearest location%n%10s %12s %12s %12s%n",
+                          "locations", "build msec", "index usec",
+                          "scan usec");
+        int queries = 10000;
+        for (int size = n / 8; size <= n; size *= 2) {
+            Random rand = new Random(size);
+            int[] ids = new int[size];
+            double[] xs = new double[size], ys = new double[size];
+            for (int k = 0; k < size; k += 1) {
+                ids[k] = k + 1;
+                xs[k] = rand.nextDouble() * 1000;
+                ys[k] = rand.nextDouble() * 1000;
+            }
+            double[] qx = new double[queries], qy = new double[queries];
+            for (int q = 0; q < queries; q += 1) {
+                qx[q] = rand.nextDouble() * 1000;
+                qy[q] = rand.nextDouble() * 1000;
+            }
+            long build, indexed, scanned, check;
+            build = indexed = scanned = Long.MAX_VALUE;
+            check = 0;
+            for (int trial = 0; trial < TRIALS; trial += 1) {
+                long start = System.nanoTime();
+                SpatialIndex index = new SpatialIndex(ids, xs, ys);
+                build = Math.min(build, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int q = 0; q < queries; q += 1) {
+                    check += index.nearest(qx[q], qy[q]);
+                }
+                indexed = Math.min(indexed, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int q = 0; q < queries; q += 1) {
+                    int best = 0;
+                    double bestDist = Double.POSITIVE_INFINITY;
+                    for (int k = 0; k < size; k += 1) {
+                        double dx = xs[k] - qx[q], dy = ys[k] - qy[q];
+                        double dist = dx * dx + dy * dy;
+                        if (dist < bestDist) {
+                            best = ids[k];
+                            bestDist = dist;
+                        }
+                    }
+                    check -= best;
+                }
+                scanned = Math.min(scanned, System.nanoTime() - start);
+            }
+            if (check != 0) {
+                System.out.println("index and scan disagree");
+            }
+            System.out.printf("%10d %12.2f %12.3f %12.3f%n", size,
+                              build / 1e6, indexed / 1e3 / queries,
+                              scanned / 1e3 / queries);
+        }
+    }
+
+    /** Returns the steps of all the legs of ROUTE, in order. */
+    static List<Directions.Step> steps(Route route) {
+        ArrayList<Directions.Step> result = new ArrayList<>();
+        for (Route.Leg leg : route.legs()) {
+            result.addAll(leg.steps());
+        }
+        return result;
+    }
+
+    /** Write a map of SIDE x SIDE locations on a jittered grid, joined by
+     *  roads to their east and south neighbors, to FILE, using RAND to
+     *  choose positions and lengths.  Returns the number of entries
+     *  written. */
+    static int writeGridMap(File file, int side, Random rand)
+        throws IOException {
+        int entries;
+        entries = 0;
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < side; i += 1) {
+                for (int j = 0; j < side; j += 1) {
+                    out.write(String.format("L G%d_%d %.3f %.3f%n", i, j,
+                                            j + 0.3 * rand.nextDouble(),
+                                            i + 0.3 * rand.nextDouble()));
+                    entries += 1;
+                }
+            }
+            for (int i = 0; i < side; i += 1) {
+                for (int j = 0; j < side; j += 1) {
+                    if (j + 1 < side) {
+                        out.write(String.format("R G%d_%d Row%d %.2f WE"
+                                                + " G%d_%d%n", i, j, i % 8,
+                                                1 + rand.nextDouble(),
+                                                i, j + 1));
+                        entries += 1;
+                    }
+                    if (i + 1 < side) {
+                        out.write(String.format("R G%d_%d Col%d %.2f NS"
+                                                + " G%d_%d%n", i, j, j % 8,
+                                                1 + rand.nextDouble(),
+                                                i + 1, j));
+                        entries += 1;
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /** Number of repetitions of each timing; the best is reported. */
+    private static final int TRIALS = 3;
+}
@@ -1,18 +1,32 @@
 package trip;
 
+import graph.ContractionHierarchy;
 import graph.DirectedGraph;
+import graph.Graph;
 import graph.LabeledGraph;
 import graph.SimpleShortestPaths;
+import graph.VersionedGraph;
+import graph.WeightOverlay;
 
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static trip.Main.error;
 
@@ -22,12 +36,54 @@ import static trip.Main.error;
  */
 class Trip {
 
-    /** Read map file named NAME into out map graph. */
+    /** A Trip with an empty map, which plans the legs of a trip on as many
+     *  threads as there are processors. */
+    Trip() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** A Trip with an empty map, which plans up to THREADS legs of a trip
+     *  at once. */
+    Trip(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _threads = threads;
+    }
+
+    /** Read map file named NAME into out map graph.  Once the file has been
+     *  read, the map is frozen: its graph is replaced by a read-only copy
+     *  laid out for fast searching, and no further entries may be added,
+     *  although its roads may be closed and reopened (see setRoadsOpen)
+     *  and slowed by traffic (see setCongestion).
+     *  NAME may be either a text map or a compiled map (see MapFile); the
+     *  two are told apart by their first bytes.  If there is a landmark
+     *  file for the map (see writeLandmarks), it is read as well. */
     void readMap(String name) {
+        try {
+            if (MapFile.isCompiled(name)) {
+                loadMap(MapFile.read(name));
+            } else {
+                readTextMap(name);
+            }
+            _roads = new VersionedGraph(_map);
+            _traffic = new WeightOverlay(_map, 1.0);
+            _conditions = new Conditions(_roads.current(),
+                                         _traffic.current());
+            indexSites();
+            if (new File(name + LANDMARK_SUFFIX).isFile()) {
+                readLandmarks(name + LANDMARK_SUFFIX);
+            }
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Read the text map file named NAME into my map graph. */
+    private void readTextMap(String name) {
         int n;
         n = 0;
-        try {
-            Scanner inp = new Scanner(new FileReader(name));
+        try (MapReader inp = new MapReader(name)) {
             while (inp.hasNext()) {
                 n += 1;
                 switch (inp.next()) {
@@ -50,42 +106,503 @@ class Trip {
         } catch (NoSuchElementException excp) {
             error("entry incomplete at end of file");
         }
+        _map = _map.freeze();
+    }
+
+    /** Choose K landmarks in my map, which must have been read, and use
+     *  them to improve the distance estimates that guide searches. */
+    void computeLandmarks(int k) {
+        _landmarks = new Landmarks(_map, k, roadLengths());
+    }
+
+    /** Returns the lengths of the roads of my map, as landmark weights. */
+    private Landmarks.Weights roadLengths() {
+        return (u, v) -> _map.getLabel(u, v).length();
+    }
+
+    /** Write my landmarks, which must have been computed, to the file named
+     *  NAME.  If NAME is the name of a map file with LANDMARK_SUFFIX
+     *  appended, the landmarks are read along with the map. */
+    void writeLandmarks(String name) {
+        try {
+            _landmarks.write(name);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Read landmarks for my map, which must have been read, from the file
+     *  named NAME, as written by writeLandmarks. */
+    void readLandmarks(String name) {
+        Landmarks landmarks;
+        landmarks = null;
+        try {
+            landmarks = Landmarks.read(name);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+        if (!landmarks.fits(_map, roadLengths())) {
+            error("landmarks in %s do not match the map", name);
+        }
+        _landmarks = landmarks;
+    }
+
+    /** Contract my map, which must have been read, into a contraction
+     *  hierarchy, which then answers every shortest-path query in place of
+     *  a search of the map.  Worthwhile when many trips are to be planned
+     *  on one map.  The hierarchy describes the map as read, so while any
+     *  road is closed or has traffic set, legs are planned by searching
+     *  the map instead (see searchMethod). */
+    void buildHierarchy() {
+        ContractionHierarchy hierarchy = new ContractionHierarchy(_map) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return _map.getLabel(u, v).length();
+                }
+            };
+        hierarchy.contract();
+        _hierarchy = hierarchy;
+    }
+
+    /** Returns true iff I plan legs under the road conditions NOW with my
+     *  hierarchy: that is, iff I have one and all roads are open and
+     *  clear. */
+    private boolean usesHierarchy(Conditions now) {
+        return _hierarchy != null && now.roads.edgeSize() == _map.edgeSize()
+            && now.traffic.changedCount() == 0;
+    }
+
+    /** Returns a description of how legs of trips are currently planned:
+     *  with my hierarchy, or by searching the map (in both directions at
+     *  once, if so set), noting whether the hierarchy is being bypassed
+     *  because of closed roads or traffic. */
+    String searchMethod() {
+        String search = _bidirectional ? "bidirectional graph" : "graph";
+        if (usesHierarchy(_conditions)) {
+            return "hierarchy";
+        } else if (_hierarchy != null) {
+            return search
+                + " (hierarchy bypassed: roads closed or traffic set)";
+        } else {
+            return search;
+        }
+    }
+
+    /** Returns the total number of vertices settled by all searches for
+     *  trips so far. */
+    long settledCount() {
+        return _settled.get();
+    }
+
+    /** Write my map, which must have been read, to the file named NAME as
+     *  a compiled map. */
+    void compileMap(String name) {
+        int numLocations = _map.vertexSize();
+        MapFile result = new MapFile(numLocations, _map.edgeSize());
+        int e;
+        e = 0;
+        for (int v = 1; v <= numLocations; v += 1) {
+            Location loc = _map.getLabel(v);
+            result.locationNames[v] = loc.toString();
+            result.x[v] = loc.x();
+            result.y[v] = loc.y();
+            for (int w : _map.successors(v)) {
+                Road road = _map.getLabel(v, w);
+                result.targets[e] = w;
+                result.roadNames[e] = road.toString();
+                result.directions[e] = road.direction();
+                result.lengths[e] = road.length();
+                e += 1;
+            }
+            result.offsets[v + 1] = e;
+        }
+        try {
+            result.write(name);
+        } catch (IOException excp) {
+            error(excp.getMessage());
+        }
+    }
+
+    /** Replace my (empty) map with the compiled map M. */
+    private void loadMap(MapFile m) {
+        Graph graph;
+        graph = null;
+        try {
+            graph = DirectedGraph.frozen(m.offsets, m.targets);
+        } catch (IllegalArgumentException excp) {
+            error("corrupt compiled map: %s", excp.getMessage());
+        }
+        RoadMap map = new RoadMap(graph, null);
+        for (int v = 1; v <= m.numLocations(); v += 1) {
+            String name = m.locationNames[v];
+            if (_sites.put(name, v) != null) {
+                error("multiple entries for %s", name);
+            }
+            map.setLabel(v, new Location(name, m.x[v], m.y[v]));
+            for (int e = m.offsets[v]; e < m.offsets[v + 1]; e += 1) {
+                map.setLabel(v, m.targets[e],
+                             new Road(m.roadNames[e], m.directions[e],
+                                      m.lengths[e]));
+            }
+        }
+        _map = map;
     }
 
     /** Produce a report on the standard output of a shortest journey from
-     *  DESTS.get(0), then DESTS.get(1), .... */
+     *  DESTS.get(0), then DESTS.get(1), ....  The legs of the journey are
+     *  planned before any is reported, in parallel if there are several,
+     *  and then reported in order. */
     void makeTrip(List<String> dests) {
+        makeTrip(dests, new TextDirections(new BufferedWriter(
+                            new OutputStreamWriter(System.out))));
+    }
+
+    /** Deliver to OUT the directions for a shortest journey from
+     *  DESTS.get(0), then DESTS.get(1), ..., as for makeTrip(DESTS).  OUT
+     *  is flushed when the directions are complete or an error is
+     *  reported.  If a location is unknown, the directions up to the
+     *  last known one are delivered before the error is reported.  Once
+     *  my map has been read, any number of threads may make trips at
+     *  once. */
+    void makeTrip(List<String> dests, Directions out) {
+        try {
+            Route route = planKnown(dests);
+            route.render(out);
+            checkComplete(route, dests);
+        } finally {
+            out.flush();
+        }
+    }
+
+    /** Returns a shortest journey from DESTS.get(0), then DESTS.get(1),
+     *  ..., without reporting it. */
+    Route planTrip(List<String> dests) {
+        Route route = planKnown(dests);
+        checkComplete(route, dests);
+        return route;
+    }
+
+    /** Returns a shortest journey from DESTS.get(0) through as many of
+     *  DESTS.get(1), ... as precede the first unknown location.  The legs
+     *  are planned before the route is assembled, in parallel if there
+     *  are several. */
+    private Route planKnown(List<String> dests) {
         if (dests.size() < 2) {
             error("must have at least two locations for a trip");
         }
 
-        System.out.printf("From %s:%n%n", dests.get(0));
+        int[] stops = new int[dests.size()];
+        int unknown;
+        for (unknown = 0; unknown < stops.length; unknown += 1) {
+            int v = vertex(dests.get(unknown));
+            if (v == 0) {
+                break;
+            }
+            stops[unknown] = v;
+        }
+        AtomicLong settled = new AtomicLong();
+        List<List<Integer>> segments =
+            planLegs(_conditions, stops, Math.max(unknown - 1, 0), settled);
+
+        Route.Builder route = new Route.Builder();
+        route.start(unknown == 0 ? dests.get(0)
+                    : _map.getLabel(stops[0]).toString());
         int step;
 
         step = 1;
-        for (int i = 1; i < dests.size(); i += 1) {
-            Integer
-                from = _sites.get(dests.get(i - 1)),
-                to = _sites.get(dests.get(i));
-            if (from == null) {
-                error("No location named %s", dests.get(i - 1));
-            } else if (to == null) {
-                error("No location named %s", dests.get(i));
-            }
-            TripPlan plan = new TripPlan(from, to);
+        for (int i = 0; i < segments.size(); i += 1) {
+            step = reportSegment(step, stops[i], segments.get(i), route);
+        }
+        return route.build(settled.get());
+    }
+
+    /** Report an error if ROUTE, planned for DESTS, stops short of the
+     *  last of them. */
+    private void checkComplete(Route route, List<String> dests) {
+        if (route.legs().size() < dests.size() - 1) {
+            for (String name : dests) {
+                if (vertex(name) == 0) {
+                    error("No location named %s", name);
+                }
+            }
+        }
+    }
+
+    /** Returns shortest paths under the road conditions NOW for the first
+     *  NUMLEGS legs of a trip through the locations STOPS.  Item K is the
+     *  path from STOPS[K] to STOPS[K + 1], as returned by pathTo.  Legs are
+     *  planned in parallel on _pool when there are several and I have
+     *  more than one thread.  Adds the number of vertices settled to
+     *  SETTLED. */
+    private List<List<Integer>> planLegs(Conditions now, int[] stops,
+                                         int numLegs, AtomicLong settled) {
+        ArrayList<List<Integer>> result = new ArrayList<>();
+        if (_threads == 1 || numLegs < 2) {
+            for (int k = 0; k < numLegs; k += 1) {
+                result.add(planLeg(now, stops[k], stops[k + 1], settled));
+            }
+            return result;
+        }
+
+        ExecutorService pool = pool();
+        ArrayList<Future<List<Integer>>> legs = new ArrayList<>();
+        for (int k = 0; k < numLegs; k += 1) {
+            int from = stops[k], to = stops[k + 1];
+            legs.add(pool.submit(() -> planLeg(now, from, to, settled)));
+        }
+        for (Future<List<Integer>> leg : legs) {
+            try {
+                result.add(leg.get());
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                error("trip planning interrupted");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+        return result;
+    }
+
+    /** Returns _pool, creating it if needed. */
+    private synchronized ExecutorService pool() {
+        if (_pool == null) {
+            ThreadPoolExecutor pool =
+                new ThreadPoolExecutor(_threads, _threads,
+                                       POOL_KEEP_ALIVE, TimeUnit.SECONDS,
+                                       new LinkedBlockingQueue<>(),
+                                       r -> {
+                                           Thread t = new Thread(r);
+                                           t.setDaemon(true);
+                                           return t;
+                                       });
+            pool.allowCoreThreadTimeOut(true);
+            _pool = pool;
+        }
+        return _pool;
+    }
+
+    /** Returns a shortest path under the road conditions NOW from FROM to
+     *  TO, as for pathTo, using my hierarchy if I have one and the roads
+     *  are all open and clear, and otherwise the current thread's search
+     *  workspace.  Adds the number of vertices settled to SETTLED. */
+    private List<Integer> planLeg(Conditions now, int from, int to,
+                                  AtomicLong settled) {
+        RouteCache cache = _cache;
+        long version = now.number;
+        if (cache != null) {
+            List<Integer> cached = cache.get(from, to, version);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<Integer> path;
+        if (usesHierarchy(now)) {
+            path = _hierarchy.path(from, to);
+            settled.addAndGet(_hierarchy.getSettledCount());
+            _settled.addAndGet(_hierarchy.getSettledCount());
+            if (path == null) {
+                error("no route from %s to %s", _map.getLabel(from),
+                      _map.getLabel(to));
+            }
+        } else {
+            TripPlan plan = new TripPlan(now, from, to, _workspaces.get());
+            plan.setBidirectional(_bidirectional);
             plan.setPaths();
-            List<Integer> segment = plan.pathTo(to);
-            step = reportSegment(step, from, segment);
+            settled.addAndGet(plan.getSettledCount());
+            _settled.addAndGet(plan.getSettledCount());
+            if (plan.getWeight(to) == Double.POSITIVE_INFINITY) {
+                error("no route from %s to %s", _map.getLabel(from),
+                      _map.getLabel(to));
+            }
+            path = plan.pathTo(to);
+        }
+        if (cache != null) {
+            cache.put(from, to, version, path);
+        }
+        return path;
+    }
+
+    /** Keep the routes of up to SIZE recently planned legs, so that legs
+     *  asked for again need not be planned again.  A SIZE of 0 keeps
+     *  none.  Changing the size discards any routes kept. */
+    void setCacheSize(int size) {
+        _cache = size == 0 ? null : new RouteCache(size);
+    }
+
+    /** Returns the number of legs whose routes were found among those kept
+     *  (see setCacheSize). */
+    long cacheHits() {
+        return _cache == null ? 0 : _cache.hits();
+    }
+
+    /** Returns the number of legs looked for among those kept and not
+     *  found (see setCacheSize). */
+    long cacheMisses() {
+        return _cache == null ? 0 : _cache.misses();
+    }
+
+    /** Close the roads (in both directions) between each pair of
+     *  locations named ENDS.get(2 * K) and ENDS.get(2 * K + 1) if OPEN is
+     *  false, and otherwise reopen them.  The changes take effect
+     *  together: trips being planned meanwhile use the roads as they were
+     *  before, and those planned afterward use them as they are after.
+     *  My map must have been read.  Closing roads does not invalidate
+     *  landmarks, since it can only lengthen shortest paths, but trips
+     *  are planned by searching rather than with my hierarchy while any
+     *  road is closed. */
+    synchronized void setRoadsOpen(List<String> ends, boolean open) {
+        if (ends.size() % 2 != 0) {
+            error("roads must be given as pairs of locations");
+        }
+        VersionedGraph.Editor edit = _roads.edit();
+        for (int k = 0; k < ends.size(); k += 2) {
+            int u = site(ends.get(k)), v = site(ends.get(k + 1));
+            if (!_map.contains(u, v) && !_map.contains(v, u)) {
+                error("no road from %s to %s", ends.get(k), ends.get(k + 1));
+            }
+            setOpen(edit, u, v, open);
+            setOpen(edit, v, u, open);
+        }
+        _conditions = new Conditions(edit.publish(), _conditions.traffic);
+    }
+
+    /** Make travel on the roads (in both directions) between each pair of
+     *  locations named ENDS.get(2 * K) and ENDS.get(2 * K + 1) take FACTOR
+     *  times as long as their lengths alone would, so that trips avoid
+     *  them when other routes are faster.  A FACTOR of 1 clears the
+     *  congestion.  FACTOR may not be less than 1, so that distance
+     *  estimates from locations and landmarks remain lower bounds.  The
+     *  changes take effect together, as for setRoadsOpen, and directions
+     *  still give the lengths of the roads taken.  My map must have been
+     *  read.  Trips are planned by searching rather than with my
+     *  hierarchy while any road is congested. */
+    synchronized void setCongestion(List<String> ends, double factor) {
+        if (ends.size() % 2 != 0) {
+            error("roads must be given as pairs of locations");
+        }
+        if (!(factor >= 1)) {
+            error("congestion factor must be at least 1");
+        }
+        for (int k = 0; k < ends.size(); k += 2) {
+            int u = site(ends.get(k)), v = site(ends.get(k + 1));
+            if (!_map.contains(u, v) && !_map.contains(v, u)) {
+                error("no road from %s to %s", ends.get(k), ends.get(k + 1));
+            }
+        }
+        for (int k = 0; k < ends.size(); k += 2) {
+            int u = site(ends.get(k)), v = site(ends.get(k + 1));
+            if (_map.contains(u, v)) {
+                _traffic.set(u, v, factor);
+            }
+            if (_map.contains(v, u)) {
+                _traffic.set(v, u, factor);
+            }
+        }
+        _conditions = new Conditions(_conditions.roads, _traffic.publish());
+    }
+
+    /** Using EDIT, open the road in my map from U to V if OPEN, and
+     *  otherwise close it.  Does nothing if there is no such road. */
+    private void setOpen(VersionedGraph.Editor edit, int u, int v,
+                         boolean open) {
+        if (!_map.contains(u, v)) {
+            return;
+        } else if (open) {
+            edit.add(u, v);
+        } else {
+            edit.remove(u, v);
+        }
+    }
+
+    /** Returns the vertex of the location named NAME, or of the location
+     *  nearest the position NAME gives (see vertex). */
+    private int site(String name) {
+        int v = vertex(name);
+        if (v == 0) {
+            error("No location named %s", name);
+        }
+        return v;
+    }
+
+    /** Returns the vertex of the location named NAME, or 0 if there is
+     *  none.  Failing that, a NAME of the form @X:Y, where X and Y are
+     *  numbers, denotes the location nearest to (X, Y), as when a trip
+     *  starts from a GPS fix rather than a named place.  Named locations
+     *  take precedence, so that no existing name changes meaning. */
+    private int vertex(String name) {
+        Integer v = _sites.get(name);
+        if (v != null) {
+            return v;
+        }
+        int colon = name.indexOf(':');
+        if (_index == null || !name.startsWith("@") || colon < 0) {
+            return 0;
         }
+        try {
+            return _index.nearest(
+                Double.parseDouble(name.substring(1, colon)),
+                Double.parseDouble(name.substring(colon + 1)));
+        } catch (NumberFormatException excp) {
+            return 0;
+        }
+    }
+
+    /** Returns the names of the K locations nearest to (X, Y) (or of all
+     *  locations, if there are fewer), from nearest to farthest.  My map
+     *  must have been read. */
+    List<String> nearestLocations(double x, double y, int k) {
+        return names(_index.nearest(x, y, k));
+    }
+
+    /** Returns the names of the locations no farther than R from (X, Y),
+     *  from nearest to farthest.  My map must have been read. */
+    List<String> locationsWithin(double x, double y, double r) {
+        return names(_index.within(x, y, r));
     }
 
-    /** Print out a written description of the location sequence SEGMENT,
-     *  starting at FROM, and numbering the lines of the description starting
-     *  at SEQ.  That is, FROM and each item in SEGMENT are the
-     *  numbers of vertices representing locations.  Together, they
-     *  specify the starting point and vertices along a path where
-     *  each vertex is joined to the next by an edge.  Returns the
-     *  next sequence number.  The format is as described in the
+    /** Returns the names of the locations whose vertices are VERTICES, in
+     *  order. */
+    private List<String> names(int[] vertices) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int v : vertices) {
+            result.add(_map.getLabel(v).toString());
+        }
+        return result;
+    }
+
+    /** Index the positions of all locations in my map, which is
+     *  complete. */
+    private void indexSites() {
+        int n = _sites.size();
+        int[] ids = new int[n];
+        double[] xs = new double[n], ys = new double[n];
+        int k;
+        k = 0;
+        for (int v : _sites.values()) {
+            Location loc = _map.getLabel(v);
+            ids[k] = v;
+            xs[k] = loc.x();
+            ys[k] = loc.y();
+            k += 1;
+        }
+        _index = new SpatialIndex(ids, xs, ys);
+    }
+
+    /** Plan each leg of a trip with a bidirectional search iff ON. */
+    void setBidirectional(boolean on) {
+        _bidirectional = on;
+    }
+
+    /** Deliver to OUT a description of the location sequence
+     *  SEGMENT, starting at FROM, and numbering the lines of the
+     *  description starting at SEQ.  That is, FROM and each item in
+     *  SEGMENT are the numbers of vertices representing locations.
+     *  Together, they specify the starting point and vertices along a
+     *  path where each vertex is joined to the next by an edge.  Returns
+     *  the next sequence number.  The format is as described in the
      *  project specification.  That is, each line but the last in the
      *  segment is formatted like this example:
      *      1. Take University_Ave west for 0.1 miles.
@@ -93,7 +610,8 @@ class Trip {
      *      5. Take I-80 west for 8.4 miles to San_Francisco.
      *  Adjacent roads with the same name and direction are combined.
      *  */
-    int reportSegment(int seq, int from, List<Integer> segment) {
+    int reportSegment(int seq, int from, List<Integer> segment,
+                      Directions out) {
         Iterator<Integer> segiter = segment.iterator();
         int v1 = segiter.next();
         int v2 = segiter.next();
@@ -112,17 +630,15 @@ class Trip {
                     && currDirection.equals(nextDirection)) {
                 distance += nextDistance;
             } else {
-                System.out.printf("%d. Take %s %s for %.1f miles.%n",
-                        seq, currName, currDirection, distance);
+                out.step(seq, currName, currDirection, distance, null);
                 seq += 1;
                 distance = nextDistance;
             }
             currDirection = nextDirection;
             currName = nextName;
         }
-        System.out.printf("%d. Take %s %s for %.1f miles to %s.%n",
-                seq, currName, currDirection,
-                distance, _map.getLabel(v2).toString());
+        out.step(seq, currName, currDirection, distance,
+                 _map.getLabel(v2).toString());
         seq += 1;
         return seq;
     }
@@ -157,39 +673,176 @@ class Trip {
 
     /** Represents the network of Locations and Roads. */
     private RoadMap _map = new RoadMap();
+    /** The roads of _map that are open, as a graph with the same vertices
+     *  and edge ids, which is replaced by a new version whenever roads
+     *  are closed or reopened.  Null until the map has been read. */
+    private VersionedGraph _roads;
+    /** Congestion factors of the roads of _map, by which their lengths
+     *  are multiplied to give the costs of traveling them.  Null until
+     *  the map has been read. */
+    private WeightOverlay _traffic;
+    /** The current versions of _roads and _traffic. */
+    private volatile Conditions _conditions;
     /** Mapping of Location names to corresponding map vertices. */
     private HashMap<String, Integer> _sites = new HashMap<>();
+    /** The positions of the locations in _sites, for finding those
+     *  nearest to a point.  Null until the map has been read. */
+    private SpatialIndex _index;
+    /** Search state shared by successive TripPlans on each thread. */
+    private final ThreadLocal<SimpleShortestPaths.Workspace> _workspaces =
+        ThreadLocal.withInitial(SimpleShortestPaths.Workspace::new);
+    /** Landmarks used to estimate distances, or null if none. */
+    private Landmarks _landmarks;
+    /** Contraction hierarchy of _map that answers queries, or null if
+     *  legs are planned by searching _map. */
+    private ContractionHierarchy _hierarchy;
+    /** Recently planned routes, or null if they are not kept. */
+    private volatile RouteCache _cache;
+    /** Total number of vertices settled by searches. */
+    private final AtomicLong _settled = new AtomicLong();
+    /** True iff legs are planned with bidirectional search. */
+    private boolean _bidirectional;
+    /** Maximum number of legs of a trip planned at once. */
+    private final int _threads;
+    /** Threads that plan legs in parallel, created when first needed. */
+    private ExecutorService _pool;
+    /** Seconds that an idle thread of _pool is kept. */
+    private static final long POOL_KEEP_ALIVE = 30;
+    /** Suffix added to the name of a map file to get the name of its
+     *  landmark file. */
+    static final String LANDMARK_SUFFIX = ".landmarks";
 
     /** A labeled directed graph of Locations whose edges are labeled by
      *  Roads. */
     private static class RoadMap extends LabeledGraph<Location, Road> {
         /** An empty RoadMap. */
         RoadMap() {
-            super(new DirectedGraph());
+            this(new DirectedGraph());
+        }
+
+        /** A RoadMap over G, which is modifiable iff BUILDER is G. */
+        private RoadMap(Graph G, DirectedGraph builder) {
+            super(G);
+            _builder = builder;
         }
+
+        /** A modifiable RoadMap over G. */
+        private RoadMap(DirectedGraph G) {
+            this(G, G);
+        }
+
+        @Override
+        public void setLabel(int u, int v, Road road) {
+            super.setLabel(u, v, road);
+            int e = edgeId(u, v);
+            if (e >= _lengths.length) {
+                _lengths = Arrays.copyOf(_lengths,
+                                         Math.max(e + 1, 2 * _lengths.length));
+            }
+            _lengths[e] = road == null ? 0 : road.length();
+        }
+
+        /** Returns the id of the road from U to V, or 0 if there is none.
+         *  The open roads and the traffic use the same ids. */
+        int roadId(int u, int v) {
+            return edgeId(u, v);
+        }
+
+        /** Returns the length of the road whose id is ID. */
+        double length(int id) {
+            return _lengths[id];
+        }
+
+        /** Returns a read-only RoadMap with the same vertices, edges, and
+         *  labels as mine, whose graph is a frozen copy of mine.  Returns
+         *  me if I am already frozen. */
+        RoadMap freeze() {
+            if (_builder == null) {
+                return this;
+            }
+            RoadMap result = new RoadMap(_builder.freeze(), null);
+            for (int v : vertices()) {
+                result.setLabel(v, getLabel(v));
+            }
+            for (int[] e : edges()) {
+                result.setLabel(e[0], e[1], getLabel(e[0], e[1]));
+            }
+            return result;
+        }
+
+        /** The modifiable graph I was built on, or null if I am frozen. */
+        private final DirectedGraph _builder;
+        /** The lengths of my roads, indexed by edge id. */
+        private double[] _lengths = new double[0];
+    }
+
+    /** The state of the roads of a map at one moment: which are open and
+     *  how congested they are.  Each trip is planned under one
+     *  Conditions throughout, and routes are cached by its number. */
+    private static class Conditions {
+        /** The conditions with the open roads ROADS and the congestion
+         *  factors TRAFFIC. */
+        Conditions(VersionedGraph.Version roads,
+                   WeightOverlay.Generation traffic) {
+            this.roads = roads;
+            this.traffic = traffic;
+            number = NUMBERS.incrementAndGet();
+        }
+
+        /** The open roads. */
+        final VersionedGraph.Version roads;
+        /** The congestion factors of the roads. */
+        final WeightOverlay.Generation traffic;
+        /** A number that is larger than that of any Conditions created
+         *  before me. */
+        final long number;
+        /** Source of numbers for all Conditions. */
+        private static final AtomicLong NUMBERS = new AtomicLong();
     }
 
     /** Paths in _map from a given location. */
     private class TripPlan extends SimpleShortestPaths {
-        /** A plan for travel from START to DEST according to _map. */
-        TripPlan(int start, int dest) {
-            super(_map, start, dest);
+        /** A plan for travel from START to DEST under the road conditions
+         *  NOW, using the search state in WORKSPACE. */
+        TripPlan(Conditions now, int start, int dest, Workspace workspace) {
+            super(now.roads, start, dest, workspace);
+            _traffic = now.traffic.changedCount() == 0 ? null : now.traffic;
+            _startLocation = _map.getLabel(start);
             _finalLocation = _map.getLabel(dest);
         }
 
         @Override
         protected double getWeight(int u, int v) {
-            return _map.getLabel(u, v).length();
+            int id = _map.roadId(u, v);
+            double length = _map.length(id);
+            return _traffic == null ? length : length * _traffic.get(id);
         }
 
         @Override
         protected double estimatedDistance(int v) {
             Location start = _map.getLabel(v);
-            return start.dist(_finalLocation);
+            double dist = start.dist(_finalLocation);
+            if (_landmarks != null) {
+                dist = Math.max(dist, _landmarks.lowerBound(v, getDest()));
+            }
+            return dist;
+        }
+
+        @Override
+        protected double estimatedDistanceFromSource(int v) {
+            double dist = _map.getLabel(v).dist(_startLocation);
+            if (_landmarks != null) {
+                dist = Math.max(dist, _landmarks.lowerBound(getSource(), v));
+            }
+            return dist;
         }
 
+        /** Location of the start. */
+        private final Location _startLocation;
         /** Location of the destination. */
         private final Location _finalLocation;
+        /** Congestion factors, or null if no road is congested. */
+        private final WeightOverlay.Generation _traffic;
 
     }
 
@@ -5,6 +5,36 @@ package trip;
  * may not be part of your trip package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import graph.DepthFirstTraversal;
+import graph.DirectedGraph;
+import graph.Graph;
+import graph.GraphFilter;
+import graph.Iteration;
+import graph.SimpleShortestPaths;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
 import org.junit.Test;
 import ucb.junit.textui;
 import static org.junit.Assert.*;
@@ -21,4 +51,791 @@ public class UnitTest {
     public void dummyTest() {
     }
 
+    /** Returns a temporary file containing CONTENTS, deleted on exit. */
+    static File tempFile(String contents) throws IOException {
+        File file = File.createTempFile("trip", ".map");
+        file.deleteOnExit();
+        try (FileWriter out = new FileWriter(file)) {
+            out.write(contents);
+        }
+        return file;
+    }
+
+    @Test
+    public void testMapReaderTokens() throws IOException {
+        File file = tempFile("  L Here 1.5 -2\n\tR Here I-80 1e1 NS Here");
+        try (MapReader inp = new MapReader(file.getPath())) {
+            assertEquals("L", inp.next());
+            String here = inp.next();
+            assertEquals("Here", here);
+            assertEquals(1.5, inp.nextDouble(), 0);
+            assertEquals(-2.0, inp.nextDouble(), 0);
+            assertEquals("R", inp.next());
+            assertSame(here, inp.next());
+            assertEquals("I-80", inp.next());
+            assertEquals(10.0, inp.nextDouble(), 0);
+            assertEquals("NS", inp.next());
+            assertTrue(inp.hasNext());
+            assertSame(here, inp.next());
+            assertFalse(inp.hasNext());
+        }
+    }
+
+    @Test
+    public void testMapReaderNumbers() throws IOException {
+        String text = "NaN -Infinity 1,000 2.5e-3 0x1p3";
+        Scanner expected = new Scanner(text);
+        try (MapReader inp = new MapReader(tempFile(text).getPath())) {
+            for (int k = 0; k < 4; k += 1) {
+                assertEquals(expected.nextDouble(), inp.nextDouble(), 0);
+            }
+            try {
+                inp.nextDouble();
+                fail("non-number accepted");
+            } catch (InputMismatchException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** Returns the message produced by reading a map containing
+     *  CONTENTS, or null if there is none. */
+    static String readMapError(String contents) throws IOException {
+        try {
+            new Trip().readMap(tempFile(contents).getPath());
+            return null;
+        } catch (IllegalArgumentException excp) {
+            return excp.getMessage();
+        }
+    }
+
+    @Test
+    public void testReadMapErrors() throws IOException {
+        assertNull(readMapError("L A 0 0\nL B 3 4\nR A Main 5 WE B\n"));
+        assertEquals("bad entry #2",
+                     readMapError("L A 0 0\nL B 3 four\n"));
+        assertEquals("bad entry #2", readMapError("L A 0 0\nL B 3 1.5d\n"));
+        assertEquals("entry incomplete at end of file",
+                     readMapError("L A 0 0\nR A Main 5"));
+        assertEquals("map entry #1: unknown type", readMapError("X A 0 0"));
+        assertEquals("multiple entries for A",
+                     readMapError("L A 0 0 L A 1 1"));
+    }
+
+    @Test
+    public void testCompiledMap() throws IOException {
+        File text = tempFile("L A 0 0\nL B 3 4\nL C 3 0\n"
+                             + "R A Main 5 WE B\nR C Side_St 3.5 SN B\n");
+        File compiled = tempFile("");
+        File again = tempFile("");
+        Trip trip = new Trip();
+        trip.readMap(text.getPath());
+        trip.compileMap(compiled.getPath());
+        assertTrue(MapFile.isCompiled(compiled.getPath()));
+        assertFalse(MapFile.isCompiled(text.getPath()));
+
+        MapFile m = MapFile.read(compiled.getPath());
+        assertEquals(3, m.numLocations());
+        assertEquals(4, m.numRoads());
+        assertEquals("B", m.locationNames[2]);
+        assertEquals(4.0, m.y[2], 0);
+        for (int e = m.offsets[3]; e < m.offsets[4]; e += 1) {
+            assertEquals(2, m.targets[e]);
+            assertEquals("Side_St", m.roadNames[e]);
+            assertEquals(Direction.SN, m.directions[e]);
+            assertEquals(3.5, m.lengths[e], 0);
+        }
+
+        trip = new Trip();
+        trip.readMap(compiled.getPath());
+        trip.compileMap(again.getPath());
+        assertArrayEquals(Files.readAllBytes(compiled.toPath()),
+                          Files.readAllBytes(again.toPath()));
+
+        byte[] truncated = Files.readAllBytes(compiled.toPath());
+        Files.write(again.toPath(),
+                    Arrays.copyOf(truncated, truncated.length - 8));
+        try {
+            new Trip().readMap(again.getPath());
+            fail("truncated compiled map accepted");
+        } catch (IllegalArgumentException excp) {
+            assertTrue(excp.getMessage().startsWith("corrupt compiled map"));
+        }
+
+        byte[] huge = Files.readAllBytes(compiled.toPath());
+        ByteBuffer.wrap(huge).putInt(12, Integer.MAX_VALUE);
+        Files.write(again.toPath(), huge);
+        try {
+            new Trip().readMap(again.getPath());
+            fail("compiled map with impossible road count accepted");
+        } catch (IllegalArgumentException excp) {
+            assertTrue(excp.getMessage().startsWith("corrupt compiled map"));
+        }
+    }
+
+    /** Returns the report produced by TRIP, which must be new, on the map
+     *  containing MAP for the trip through DESTS, followed by the error
+     *  message, if any. */
+    static String tripReport(String map, Trip trip, String... dests)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            trip.readMap(tempFile(map).getPath());
+            trip.makeTrip(Arrays.asList(dests));
+        } catch (IllegalArgumentException excp) {
+            System.out.print(excp.getMessage());
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    /** A map of four locations in a row joined by two roads. */
+    static final String LINE_MAP =
+        "L A 0 0\nL B 1 0\nL C 2 0\nL D 3 0\n"
+        + "R A Main 1 WE B\nR B Main 1 WE C\nR C Elm 1.5 WE D\n";
+
+    @Test
+    public void testMultiLegTrip() throws IOException {
+        String expected =
+            "From A:\n\n"
+            + "1. Take Main east for 2.0 miles to C.\n"
+            + "2. Take Elm east for 1.5 miles to D.\n"
+            + "3. Take Elm west for 1.5 miles.\n"
+            + "4. Take Main west for 1.0 miles to B.\n"
+            + "5. Take Main east for 1.0 miles to C.\n";
+        expected = expected.replace("\n", System.lineSeparator());
+        String[] dests = { "A", "C", "D", "B", "C" };
+        assertEquals(expected, tripReport(LINE_MAP, new Trip(1), dests));
+        assertEquals(expected, tripReport(LINE_MAP, new Trip(4), dests));
+    }
+
+    @Test
+    public void testMultiLegTripErrors() throws IOException {
+        String n = System.lineSeparator();
+        assertEquals("From A:" + n + n
+                     + "1. Take Main east for 1.0 miles to B." + n
+                     + "No location named X",
+                     tripReport(LINE_MAP, new Trip(4), "A", "B", "X", "D"));
+        assertEquals("From X:" + n + n + "No location named X",
+                     tripReport(LINE_MAP, new Trip(4), "X", "B", "C"));
+    }
+
+    @Test
+    public void testBidirectionalTrip() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(1);
+        trip.setBidirectional(true);
+        assertEquals(tripReport(map, new Trip(1), "A", "C", "D", "E", "A"),
+                     tripReport(map, trip, "A", "C", "D", "E", "A"));
+        assertEquals("bidirectional graph", trip.searchMethod());
+    }
+
+    @Test
+    public void testLandmarks() throws IOException {
+        DirectedGraph g = new DirectedGraph();
+        final int side = 6;
+        for (int k = 0; k < side * side; k += 1) {
+            g.add();
+        }
+        for (int v = 1; v <= side * side; v += 1) {
+            if (v % side != 0) {
+                g.add(v, v + 1);
+                g.add(v + 1, v);
+            }
+            if (v + side <= side * side && v % 3 != 0) {
+                g.add(v, v + side);
+            }
+        }
+        Landmarks.Weights weights = (u, v) -> 1 + (u * 7 + v * 3) % 5;
+        Landmarks landmarks = new Landmarks(g, 4, weights);
+        assertEquals(4, landmarks.size());
+        File file = tempFile("");
+        landmarks.write(file.getPath());
+        Landmarks copy = Landmarks.read(file.getPath());
+        assertTrue(copy.fits(g, weights));
+        assertFalse(copy.fits(g, (u, v) -> u == 1 ? 9 : weights.weight(u, v)));
+        for (int u = 1; u <= side * side; u += 1) {
+            SimpleShortestPaths paths = new SimpleShortestPaths(g, u) {
+                @Override
+                protected double getWeight(int a, int b) {
+                    return weights.weight(a, b);
+                }
+            };
+            paths.setPaths();
+            for (int v = 1; v <= side * side; v += 1) {
+                double bound = landmarks.lowerBound(u, v);
+                assertTrue(bound <= paths.getWeight(v));
+                assertEquals(bound, copy.lowerBound(u, v), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLandmarkTrip() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        File file = tempFile(map);
+        Trip trip = new Trip(1);
+        trip.readMap(file.getPath());
+        trip.computeLandmarks(2);
+        trip.writeLandmarks(file.getPath() + Trip.LANDMARK_SUFFIX);
+        new File(file.getPath() + Trip.LANDMARK_SUFFIX).deleteOnExit();
+        Trip plain = new Trip(1), withLandmarks = new Trip(1);
+        plain.readMap(tempFile(map).getPath());
+        withLandmarks.readMap(file.getPath());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            plain.makeTrip(Arrays.asList("A", "D", "E", "A"));
+            String expected = bytes.toString();
+            bytes.reset();
+            withLandmarks.makeTrip(Arrays.asList("A", "D", "E", "A"));
+            assertEquals(expected, bytes.toString());
+        } finally {
+            System.setOut(out);
+        }
+        assertTrue(withLandmarks.settledCount() <= plain.settledCount());
+
+        File other = tempFile(map.replace("Oak 1.2", "Oak 2.1"));
+        Files.copy(new File(file.getPath() + Trip.LANDMARK_SUFFIX).toPath(),
+                   new File(other.getPath() + Trip.LANDMARK_SUFFIX).toPath());
+        new File(other.getPath() + Trip.LANDMARK_SUFFIX).deleteOnExit();
+        try {
+            new Trip(1).readMap(other.getPath());
+            fail("landmarks for a different map accepted");
+        } catch (IllegalArgumentException excp) {
+            assertTrue(excp.getMessage().endsWith("do not match the map"));
+        }
+    }
+
+    @Test
+    public void testHierarchyTrip() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        File file = tempFile(map);
+        Trip trip = new Trip(1);
+        trip.readMap(file.getPath());
+        trip.buildHierarchy();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            trip.makeTrip(Arrays.asList("A", "D", "E", "A", "C"));
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(tripReport(map, new Trip(1), "A", "D", "E", "A", "C"),
+                     bytes.toString());
+    }
+
+    @Test
+    public void testRouteCache() {
+        RouteCache cache = new RouteCache(2);
+        List<Integer> ab = Arrays.asList(1, 2), bc = Arrays.asList(2, 3),
+            cd = Arrays.asList(3, 4);
+        assertNull(cache.get(1, 2, 5));
+        cache.put(1, 2, 5, ab);
+        cache.put(2, 3, 5, bc);
+        assertEquals(ab, cache.get(1, 2, 5));
+        cache.put(3, 4, 5, cd);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2, 3, 5));
+        assertEquals(ab, cache.get(1, 2, 5));
+        assertEquals(cd, cache.get(3, 4, 5));
+        assertNull(cache.get(2, 1, 5));
+        assertEquals(3, cache.hits());
+        assertEquals(3, cache.misses());
+        cd.set(1, 5);
+        assertEquals(Arrays.asList(3, 4), cache.get(3, 4, 5));
+
+        cache.put(2, 3, 4, bc);
+        assertNull(cache.get(2, 3, 5));
+        assertNull(cache.get(1, 2, 6));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCachedTrip() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(1);
+        trip.setCacheSize(10);
+        String expected =
+            tripReport(map, new Trip(1), "A", "D", "E", "A", "D", "E");
+        assertEquals(expected,
+                     tripReport(map, trip, "A", "D", "E", "A", "D", "E"));
+        assertEquals(2, trip.cacheHits());
+        assertEquals(3, trip.cacheMisses());
+        long settled = trip.settledCount();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            trip.makeTrip(Arrays.asList("A", "D", "E", "A", "D", "E"));
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(expected, bytes.toString());
+        assertEquals(7, trip.cacheHits());
+        assertEquals(settled, trip.settledCount());
+
+        RouteCache cache = new RouteCache(4);
+        List<Integer> ab = Arrays.asList(1, 2);
+        cache.put(1, 2, 6, ab);
+        assertNull(cache.get(1, 2, 5));
+        assertEquals(1, cache.misses());
+        assertEquals(ab, cache.get(1, 2, 6));
+        cache.put(1, 2, 5, Arrays.asList(1, 3, 2));
+        assertEquals(ab, cache.get(1, 2, 6));
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    public void testRoadClosures() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        String direct = tripReport(map, new Trip(1), "A", "D");
+        Trip trip = new Trip(1);
+        trip.setCacheSize(10);
+        assertEquals(direct, tripReport(map, trip, "A", "D"));
+        trip.buildHierarchy();
+        trip.setRoadsOpen(Arrays.asList("C", "B"), false);
+        String detour = routeText(trip, "A", "D");
+        assertTrue(detour.contains("Take Oak north for 1.2 miles."));
+        assertTrue(detour.contains("Take Pine east for 1.3 miles."));
+        trip.setRoadsOpen(Arrays.asList("B", "E", "A", "B"), false);
+        try {
+            trip.planTrip(Arrays.asList("A", "D"));
+            fail("planned a trip over a closed road");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("no route from A to D", excp.getMessage());
+        }
+        trip.setRoadsOpen(Arrays.asList("A", "B", "B", "E"), true);
+        assertEquals(detour, routeText(trip, "A", "D"));
+        trip.setRoadsOpen(Arrays.asList("B", "C"), true);
+        assertEquals(direct, routeText(trip, "A", "D"));
+        for (List<String> bad
+                 : Arrays.asList(Arrays.asList("A", "C"),
+                                 Arrays.asList("A", "B", "C"),
+                                 Arrays.asList("A", "Nowhere"))) {
+            try {
+                trip.setRoadsOpen(bad, false);
+                fail("changed roads " + bad);
+            } catch (IllegalArgumentException excp) {
+                assertEquals(direct, routeText(trip, "A", "D"));
+            }
+        }
+
+        Server server = new Server(trip);
+        assertTrue(server.stats().endsWith(
+                       String.format("search hierarchy%n")));
+        assertEquals("", server.answer("close B, C"));
+        assertEquals(detour, server.answer("A, D"));
+        assertTrue(server.stats().contains("hierarchy bypassed"));
+        assertEquals("", server.answer("open B,C"));
+        assertEquals(direct, server.answer("A, D"));
+        assertEquals(String.format("trip: no road from A to C%n"),
+                     server.answer("close A,C"));
+
+        Thread toggler = new Thread(() -> {
+            for (int k = 0; k < 200; k += 1) {
+                trip.setRoadsOpen(Arrays.asList("B", "C"), k % 2 == 1);
+            }
+        });
+        toggler.start();
+        for (int k = 0; k < 200; k += 1) {
+            String text = routeText(trip, "A", "D");
+            assertTrue(text.equals(direct) || text.equals(detour));
+        }
+        try {
+            toggler.join();
+        } catch (InterruptedException excp) {
+            fail("interrupted");
+        }
+        assertEquals(direct, routeText(trip, "A", "D"));
+    }
+
+    @Test
+    public void testCongestion() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        String direct = tripReport(map, new Trip(1), "A", "D");
+        Trip trip = new Trip(1);
+        trip.setCacheSize(10);
+        assertEquals(direct, tripReport(map, trip, "A", "D"));
+        trip.buildHierarchy();
+        trip.setRoadsOpen(Arrays.asList("B", "C"), false);
+        String detour = routeText(trip, "A", "D");
+        trip.setRoadsOpen(Arrays.asList("B", "C"), true);
+        trip.setCongestion(Arrays.asList("C", "B"), 2.4);
+        assertEquals(direct, routeText(trip, "A", "D"));
+        trip.setCongestion(Arrays.asList("B", "C"), 2.6);
+        assertEquals(detour, routeText(trip, "A", "D"));
+        assertEquals(detour, routeText(trip, "A", "D"));
+        trip.setCongestion(Arrays.asList("B", "C"), 1);
+        assertEquals(direct, routeText(trip, "A", "D"));
+        for (double bad : new double[] { 0.5, Double.NaN }) {
+            try {
+                trip.setCongestion(Arrays.asList("B", "C"), bad);
+                fail("accepted congestion factor " + bad);
+            } catch (IllegalArgumentException excp) {
+                assertEquals(direct, routeText(trip, "A", "D"));
+            }
+        }
+
+        Server server = new Server(trip);
+        assertEquals("", server.answer("traffic 3 B, C, A, B"));
+        assertEquals(detour, server.answer("A, D"));
+        assertEquals("", server.answer("traffic 1.0 B,C,A,B"));
+        assertEquals(direct, server.answer("A, D"));
+        assertEquals(String.format("trip: bad congestion factor: x%n"),
+                     server.answer("traffic x B,C"));
+    }
+
+    /** Returns the directions for a trip by TRIP through DESTS. */
+    private static String routeText(Trip trip, String... dests) {
+        StringBuilder text = new StringBuilder();
+        trip.makeTrip(Arrays.asList(dests), new TextDirections(text));
+        return text.toString();
+    }
+
+    @Test
+    public void testGraphSubclasses() {
+        DirectedGraph g = new DirectedGraph() {
+            @Override
+            public Iteration<Integer> successors(int v) {
+                return super.predecessors(v);
+            }
+        };
+        g.add();
+        g.add();
+        g.add();
+        g.add(1, 2);
+        g.add(3, 2);
+        assertEquals(Arrays.asList(1), visited(g, 1));
+        assertEquals(Arrays.asList(2, 3, 1), visited(g, 2));
+        DirectedGraph h = new DirectedGraph();
+        h.add();
+        h.add();
+        h.add(1, 2);
+        Graph reversed = new GraphFilter(h) {
+            @Override
+            public Iteration<Integer> successors(int v) {
+                return super.predecessors(v);
+            }
+        };
+        assertEquals(Arrays.asList(1), visited(reversed, 1));
+        assertEquals(Arrays.asList(2, 1), visited(reversed, 2));
+        SimpleShortestPaths paths = new SimpleShortestPaths(g, 1) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return 1;
+            }
+        };
+        paths.setPaths();
+        assertEquals(Double.POSITIVE_INFINITY, paths.getWeight(2), 0);
+    }
+
+    /** Returns the vertices of G in the order a depth-first traversal from
+     *  V visits them. */
+    private static List<Integer> visited(Graph g, int v) {
+        ArrayList<Integer> result = new ArrayList<>();
+        new DepthFirstTraversal(g) {
+            @Override
+            protected boolean visit(int u) {
+                result.add(u);
+                return true;
+            }
+        }.traverse(v);
+        return result;
+    }
+
+    @Test
+    public void testSpatialIndex() {
+        Random rand = new Random(42);
+        int n = 500;
+        int[] ids = new int[n];
+        double[] xs = new double[n], ys = new double[n];
+        for (int k = 0; k < n; k += 1) {
+            ids[k] = k + 1;
+            xs[k] = rand.nextInt(40);
+            ys[k] = rand.nextInt(40);
+        }
+        SpatialIndex index = new SpatialIndex(ids, xs, ys);
+        assertEquals(n, index.size());
+        for (int q = 0; q < 200; q += 1) {
+            double x = rand.nextDouble() * 50 - 5,
+                y = rand.nextDouble() * 50 - 5;
+            int[] all = bruteNearest(ids, xs, ys, x, y);
+            int k = rand.nextInt(12);
+            assertArrayEquals(Arrays.copyOf(all, k),
+                              index.nearest(x, y, k));
+            assertEquals(all[0], index.nearest(x, y));
+            double r = rand.nextDouble() * 8;
+            int count;
+            for (count = 0; count < n; count += 1) {
+                int v = all[count] - 1;
+                double dx = xs[v] - x, dy = ys[v] - y;
+                if (dx * dx + dy * dy > r * r) {
+                    break;
+                }
+            }
+            assertArrayEquals(Arrays.copyOf(all, count),
+                              index.within(x, y, r));
+        }
+        assertArrayEquals(bruteNearest(ids, xs, ys, 3, 4),
+                          index.nearest(3, 4, n + 10));
+        SpatialIndex empty =
+            new SpatialIndex(new int[0], new double[0], new double[0]);
+        assertEquals(0, empty.nearest(1, 1));
+        assertEquals(0, empty.within(1, 1, 100).length);
+    }
+
+    /** Returns IDS ordered by the distance of (XS[K], YS[K]) from (X, Y),
+     *  and then by id, by examining every point. */
+    private static int[] bruteNearest(int[] ids, double[] xs, double[] ys,
+                                      double x, double y) {
+        Integer[] order = new Integer[ids.length];
+        for (int k = 0; k < ids.length; k += 1) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> {
+            double da = (xs[a] - x) * (xs[a] - x) + (ys[a] - y) * (ys[a] - y),
+                db = (xs[b] - x) * (xs[b] - x) + (ys[b] - y) * (ys[b] - y);
+            int c = Double.compare(da, db);
+            return c != 0 ? c : Integer.compare(ids[a], ids[b]);
+        });
+        int[] result = new int[ids.length];
+        for (int k = 0; k < ids.length; k += 1) {
+            result[k] = ids[order[k]];
+        }
+        return result;
+    }
+
+    @Test
+    public void testNearestLocations() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(1);
+        trip.readMap(tempFile(map).getPath());
+        assertEquals(Arrays.asList("B", "E", "A"),
+                     trip.nearestLocations(0.9, 0.4, 3));
+        assertEquals(Arrays.asList("D", "C"),
+                     trip.locationsWithin(3.2, 0.1, 1.3));
+        assertEquals(routeText(trip, "A", "D"),
+                     routeText(trip, "@-0.3:0.2", "@2.8:0.1"));
+        assertEquals(routeText(trip, "B", "D"),
+                     routeText(trip, "@0.9:0.4", "D"));
+        try {
+            routeText(trip, "A", "@x:1");
+            fail("accepted bad position");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("No location named @x:1", excp.getMessage());
+        }
+        String direct = routeText(trip, "A", "D");
+        trip.setRoadsOpen(Arrays.asList("@1.1:-0.1", "@2.2:0.1"), false);
+        assertFalse(direct.equals(routeText(trip, "A", "D")));
+        trip.setRoadsOpen(Arrays.asList("B", "C"), true);
+        assertEquals(direct, routeText(trip, "A", "D"));
+
+        Server server = new Server(trip);
+        assertEquals(String.format("B%nE%n"),
+                     server.answer("nearest 0.9 0.4 2"));
+        assertEquals(String.format("trip: bad position or count: "
+                                   + "1 x 2%n"),
+                     server.answer("nearest 1 x 2"));
+    }
+
+    @Test
+    public void testServer() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(2);
+        trip.readMap(tempFile(map).getPath());
+        Server server = new Server(trip);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        server.serve(new BufferedReader(
+                         new StringReader("A, D,E\n\nA,Nowhere\nstats\n")),
+                     new PrintStream(bytes, true));
+        String[] answers = bytes.toString().split("(?m)^\\.$\\R", -1);
+        assertEquals(4, answers.length);
+        assertEquals(tripReport(map, new Trip(1), "A", "D", "E"),
+                     answers[0]);
+        assertEquals(String.format("trip: No location named Nowhere%n"),
+                     answers[1]);
+        assertTrue(answers[2].startsWith(String.format("requests 2%n"
+                                                       + "errors 1%n")));
+        assertEquals("", answers[3]);
+    }
+
+    @Test
+    public void testServerFailures() throws IOException {
+        Trip trip = new Trip(1) {
+            @Override
+            void makeTrip(List<String> dests, Directions out) {
+                if (dests.contains("Broken")) {
+                    throw new IllegalStateException("broken");
+                }
+                super.makeTrip(dests, out);
+            }
+        };
+        trip.readMap(tempFile(LINE_MAP).getPath());
+        Server server = new Server(trip);
+        assertEquals(String.format("trip: internal error: "
+                                   + "java.lang.IllegalStateException:"
+                                   + " broken%n"),
+                     server.answer("A, Broken"));
+        assertEquals(String.format("trip: usage: close LOCATION,"
+                                   + " LOCATION, ...%n"),
+                     server.answer("close"));
+        assertTrue(server.answer("open").startsWith("trip: usage: open"));
+        assertTrue(server.answer("traffic").startsWith("trip: usage:"));
+        assertTrue(server.answer("nearest").startsWith("trip: "));
+        assertEquals(tripReport(LINE_MAP, new Trip(1), "A", "D"),
+                     server.answer("A, D"));
+        assertTrue(server.stats().startsWith(String.format("requests 2%n"
+                                                           + "errors 1%n")));
+    }
+
+    @Test
+    public void testServerSocket() throws Exception {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(2);
+        trip.readMap(tempFile(map).getPath());
+        Server server = new Server(trip);
+        try (ServerSocket socket =
+             new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            Thread serving = new Thread(() -> {
+                try {
+                    server.serve(socket);
+                } catch (IOException excp) {
+                    return;
+                }
+            });
+            serving.setDaemon(true);
+            serving.start();
+            Socket[] clients = new Socket[3];
+            for (int k = 0; k < clients.length; k += 1) {
+                clients[k] = new Socket(InetAddress.getLoopbackAddress(),
+                                        socket.getLocalPort());
+                clients[k].getOutputStream()
+                    .write(String.format("A,D,E%n").getBytes());
+            }
+            String expected = tripReport(map, new Trip(1), "A", "D", "E");
+            for (Socket client : clients) {
+                try (BufferedReader in = new BufferedReader(
+                         new InputStreamReader(client.getInputStream()))) {
+                    StringBuilder answer = new StringBuilder();
+                    for (String line = in.readLine();
+                         !line.equals(Server.END_OF_ANSWER);
+                         line = in.readLine()) {
+                        answer.append(line).append(System.lineSeparator());
+                    }
+                    assertEquals(expected, answer.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(1);
+        trip.readMap(tempFile(map).getPath());
+        StringBuilder requests = new StringBuilder(),
+            expected = new StringBuilder();
+        for (int k = 0; k < 100; k += 1) {
+            String[] dests = k % 3 == 0 ? new String[] { "A", "D", "E" }
+                : k % 3 == 1 ? new String[] { "E", "B" }
+                : new String[] { "D", "C", "A" };
+            requests.append(String.join(" , ", dests)).append("\n");
+            expected.append(tripReport(map, new Trip(1), dests));
+        }
+        requests.append("\nA, Nowhere\n");
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Batch batch = new Batch(trip, 4);
+        int failures =
+            batch.run(new BufferedReader(new StringReader(requests.toString())),
+                      out, new PrintStream(errors, true));
+        assertEquals(1, failures);
+        assertEquals(expected.toString(), out.toString());
+        assertEquals(String.format("trip: line 102: No location named"
+                                   + " Nowhere%n"), errors.toString());
+    }
+
+    @Test
+    public void testAppendTenths() {
+        java.util.Random rand = new java.util.Random(19);
+        StringBuilder text = new StringBuilder();
+        double[] cases = { 0, 0.05, 0.15, 0.25, 1.15, 2.675, 8.45, 0.95,
+                           9.95, 99.95, 1e11 + 0.25, 1e13, 3.0e-5,
+                           Double.MIN_VALUE, -0.0, -1.25,
+                           Double.POSITIVE_INFINITY, Double.NaN };
+        for (double x : cases) {
+            text.setLength(0);
+            TextDirections.appendTenths(text, x);
+            assertEquals(String.format("%.1f", x), text.toString());
+        }
+        for (int k = 0; k < 100000; k += 1) {
+            double x = k % 2 == 0 ? rand.nextInt(100000) / 100.0
+                : rand.nextDouble() * 500;
+            text.setLength(0);
+            TextDirections.appendTenths(text, x);
+            assertEquals(String.format("%.1f", x), text.toString());
+        }
+    }
+
+    @Test
+    public void testRoute() throws IOException {
+        String map =
+            LINE_MAP + "L E 1 1\nR B Oak 1.2 SN E\nR E Pine 1.3 WE C\n";
+        Trip trip = new Trip(1);
+        trip.readMap(tempFile(map).getPath());
+        Route route = trip.planTrip(Arrays.asList("A", "D", "E"));
+        assertEquals("A", route.from());
+        assertEquals(2, route.legs().size());
+        assertEquals("D", route.legs().get(0).to());
+        assertEquals("E", route.legs().get(1).to());
+        assertEquals(3.5, route.legs().get(0).length(), 1e-9);
+        assertEquals(6.3, route.length(), 1e-9);
+        assertTrue(route.settledCount() > 0);
+        java.util.List<Directions.Step> steps = route.legs().get(0).steps();
+        assertEquals(2, steps.size());
+        assertEquals("Main", steps.get(0).road);
+        assertEquals("east", steps.get(0).direction);
+        assertEquals(2.0, steps.get(0).length, 0);
+        assertNull(steps.get(0).to);
+        assertEquals(4, route.legs().get(1).steps().get(1).seq);
+
+        StringBuilder text = new StringBuilder();
+        route.render(new TextDirections(text));
+        assertEquals(tripReport(map, new Trip(1), "A", "D", "E"),
+                     text.toString());
+
+        StringBuilder json = new StringBuilder();
+        trip.planTrip(Arrays.asList("A", "B")).appendJson(json);
+        assertEquals("{\"from\":\"A\",\"length\":1.0,\"settled\":"
+                     + trip.planTrip(Arrays.asList("A", "B")).settledCount()
+                     + ",\"legs\":[{\"to\":\"B\",\"length\":1.0,"
+                     + "\"steps\":[{\"seq\":1,\"road\":\"Main\","
+                     + "\"direction\":\"east\",\"length\":1.0}]}]}\n",
+                     json.toString());
+
+        try {
+            trip.planTrip(Arrays.asList("A", "D", "Nowhere"));
+            fail("unknown location accepted");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("No location named Nowhere", excp.getMessage());
+        }
+    }
+
 }